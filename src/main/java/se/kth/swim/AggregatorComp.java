@@ -118,13 +118,15 @@ public class AggregatorComp extends ComponentDefinition {
         @Override
         public void handle(NetStatus status) {
 			log.info(
-					"{} status from:{} pings:{} , alive : {} suspected : {} failed : {}",
+					"{} status from:{} pings:{} , alive : {} suspected : {} failed : {} srtt : {} rttvar : {}",
 					new Object[] { selfAddress.getId(),
 							status.getHeader().getSource(),
 							status.getContent().receivedPings,
 							status.getContent().getAliveNodes(),
 							status.getContent().getSuspectedNodes(),
-							status.getContent().getFailedNodes() });
+							status.getContent().getFailedNodes(),
+							status.getContent().getSmoothedRtt(),
+							status.getContent().getRttVariance() });
 
 			startFailureEvaluation(status);
         }
@@ -29,6 +29,8 @@ import se.kth.swim.croupier.CroupierComp;
 import se.kth.swim.croupier.CroupierConfig;
 import se.kth.swim.croupier.CroupierPort;
 import se.kth.swim.croupier.util.OverlayFilter;
+import se.kth.swim.msg.net.MembershipPort;
+import se.kth.swim.msg.net.NatBehaviour;
 import se.kth.swim.msg.net.NatPort;
 import se.sics.kompics.Component;
 import se.sics.kompics.ComponentDefinition;
@@ -54,6 +56,12 @@ public class HostComp extends ComponentDefinition {
     private Component swim;
     private Component nat;
     private Component croupier;
+    private Component timerWheel;
+    
+    //tick and size of the host timer wheel, the tick is only the resolution -
+    //the real timer is armed for the earliest deadline, not every tick
+    private static final long TIMER_TICK = 100;
+    private static final int TIMER_WHEEL_SIZE = 512;
 
     public HostComp(HostInit init) {
         this.selfAddress = init.selfAddress;
@@ -62,21 +70,26 @@ public class HostComp extends ComponentDefinition {
         subscribe(handleStop, control);
         this.bootstrapNodes=init.bootstrapNodes;
         
+        //all timeouts of the host expire on one wheel, woken up by a single timer
+        timerWheel = create(TimerWheelComp.class, new TimerWheelComp.TimerWheelInit(TIMER_TICK, TIMER_WHEEL_SIZE));
+        connect(timerWheel.getNegative(Timer.class), timer);
+        
         int overlayId = 1; //so far we don' start multiple croupier overlay
         croupier = create(CroupierComp.class, new CroupierComp.CroupierInit(selfAddress, new ArrayList<NatedAddress>(this.bootstrapNodes), init.seed, init.croupierConfig, overlayId));
-        connect(croupier.getNegative(Timer.class), timer);
+        connect(croupier.getNegative(Timer.class), timerWheel.getPositive(Timer.class));
         connect(croupier.getNegative(Network.class), network, new OverlayFilter(overlayId));
         
-        nat = create(NatTraversalComp.class, new NatTraversalComp.NatTraversalInit(selfAddress, init.getSeed()));
+        nat = create(NatTraversalComp.class, new NatTraversalComp.NatTraversalInit(selfAddress, init.getSeed(), init.natConfig, init.natBehaviour));
         connect(nat.getNegative(Network.class), network);
         connect(nat.getNegative(CroupierPort.class), croupier.getPositive(CroupierPort.class));
         //connect timer
-       connect(nat.getNegative(Timer.class), timer);
+       connect(nat.getNegative(Timer.class), timerWheel.getPositive(Timer.class));
         
-        swim = create(SwimComp.class, new SwimComp.SwimInit(selfAddress, this.bootstrapNodes, init.getAggregatorAddress()));
-        connect(swim.getNegative(Timer.class), timer);
+        swim = create(SwimComp.class, new SwimComp.SwimInit(selfAddress, this.bootstrapNodes, init.getAggregatorAddress(), init.swimConfig, init.getSeed()));
+        connect(swim.getNegative(Timer.class), timerWheel.getPositive(Timer.class));
         connect(swim.getNegative(Network.class), nat.getPositive(Network.class));
         connect(swim.getNegative(NatPort.class), nat.getPositive(NatPort.class));
+        connect(nat.getNegative(MembershipPort.class), swim.getPositive(MembershipPort.class));
     }
     
     private Handler<Start> handleStart = new Handler<Start>() {
@@ -103,13 +116,25 @@ public class HostComp extends ComponentDefinition {
         private final NatedAddress aggregatorAddress;
         private final long seed;
         private final CroupierConfig croupierConfig;
+        private final SwimConfig swimConfig;
+        private final NatConfig natConfig;
+        //simulated nat of the node
+        private final NatBehaviour natBehaviour;
 
-        public HostInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, long seed, CroupierConfig croupierConfig) {
+        public HostInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, long seed, CroupierConfig croupierConfig, SwimConfig swimConfig, NatConfig natConfig, NatBehaviour natBehaviour) {
             this.selfAddress = selfAddress;
             this.bootstrapNodes = bootstrapNodes;
             this.aggregatorAddress = aggregatorAddress;
             this.seed = seed;
             this.croupierConfig = croupierConfig;
+            this.swimConfig = swimConfig;
+            this.natConfig = natConfig;
+            this.natBehaviour = natBehaviour;
+        }
+
+        public HostInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, long seed, CroupierConfig croupierConfig, SwimConfig swimConfig, NatConfig natConfig) {
+            this(selfAddress, bootstrapNodes, aggregatorAddress, seed, croupierConfig, swimConfig, natConfig,
+                    selfAddress.isOpen() ? NatBehaviour.OPEN : NatBehaviour.PORT_RESTRICTED);
         }
 
 		public NatedAddress getSelfAddress() {
@@ -131,5 +156,17 @@ public class HostComp extends ComponentDefinition {
 		public CroupierConfig getCroupierConfig() {
 			return croupierConfig;
 		}
+
+		public SwimConfig getSwimConfig() {
+			return swimConfig;
+		}
+
+		public NatConfig getNatConfig() {
+			return natConfig;
+		}
+
+		public NatBehaviour getNatBehaviour() {
+			return natBehaviour;
+		}
     }
 }
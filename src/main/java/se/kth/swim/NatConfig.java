@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim;
+
+/**
+ * Tunables of the nat traversal - how open nodes relay for their nated
+ * children.
+ */
+public class NatConfig {
+
+    public static final int DEFAULT_RELAY_CAPACITY = 4;
+    public static final int DEFAULT_RELAY_BATCH_BYTES = 1024;
+    public static final double DEFAULT_MAX_CHILD_RATE = 0;
+
+    //most nated children an open node relays for, new children past it are
+    //refused and pointed to a less loaded relay, 0 for no limit
+    public final int relayCapacity;
+    //send the failure detector probes and acks to a nated node through two of
+    //its parents at once, the receiver drops the second copy - at most one
+    //extra message per probe, for no false suspicion when a parent just died
+    public final boolean parallelRelay;
+    //open nodes hold the messages to a child for this many ms and forward them
+    //as one bundle, 0 relays every message at once
+    public final long relayBatchWindow;
+    //a bundle is forwarded early once its estimated size reaches this
+    public final int relayBatchBytes;
+    //nated nodes probing each other punch a hole for a direct path, with the
+    //relays as rendezvous, when their simulated nats allow it
+    public final boolean holePunching;
+    //most messages per second an open node relays to one child, a noisier
+    //child is throttled until its rate decays, 0 for no limit
+    public final double maxChildRate;
+
+    public NatConfig(int relayCapacity, boolean parallelRelay, long relayBatchWindow, int relayBatchBytes, boolean holePunching, double maxChildRate) {
+        this.relayCapacity = relayCapacity;
+        this.parallelRelay = parallelRelay;
+        this.relayBatchWindow = relayBatchWindow;
+        this.relayBatchBytes = relayBatchBytes;
+        this.holePunching = holePunching;
+        this.maxChildRate = maxChildRate;
+    }
+
+    public NatConfig(int relayCapacity, boolean parallelRelay, long relayBatchWindow, int relayBatchBytes, boolean holePunching) {
+        this(relayCapacity, parallelRelay, relayBatchWindow, relayBatchBytes, holePunching, DEFAULT_MAX_CHILD_RATE);
+    }
+
+    public NatConfig(int relayCapacity, boolean parallelRelay, long relayBatchWindow, int relayBatchBytes) {
+        this(relayCapacity, parallelRelay, relayBatchWindow, relayBatchBytes, false);
+    }
+
+    public NatConfig(int relayCapacity, boolean parallelRelay) {
+        this(relayCapacity, parallelRelay, 0, DEFAULT_RELAY_BATCH_BYTES);
+    }
+
+    public NatConfig(int relayCapacity) {
+        this(relayCapacity, false);
+    }
+
+    public NatConfig() {
+        this(DEFAULT_RELAY_CAPACITY);
+    }
+}
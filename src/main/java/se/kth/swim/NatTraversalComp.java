@@ -19,6 +19,7 @@
 package se.kth.swim;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,7 +35,21 @@ import org.slf4j.LoggerFactory;
 import se.kth.swim.croupier.CroupierPort;
 import se.kth.swim.croupier.internal.CroupierShuffle.Basic;
 import se.kth.swim.croupier.msg.CroupierSample;
+import se.kth.swim.croupier.msg.CroupierUpdate;
 import se.kth.swim.croupier.util.Container;
+import se.kth.swim.internal.AddressRegistry;
+import se.kth.swim.internal.DirectPaths;
+import se.kth.swim.internal.DuplicateFilter;
+import se.kth.swim.internal.ParentSelector;
+import se.kth.swim.internal.RelayBatcher;
+import se.kth.swim.internal.RelayChildren;
+import se.kth.swim.internal.RttEstimator;
+import se.kth.swim.internal.WireSize;
+import se.kth.swim.msg.RelayLoad;
+import se.kth.swim.msg.Sequenced;
+import se.kth.swim.msg.net.MembershipChange;
+import se.kth.swim.msg.net.MembershipPort;
+import se.kth.swim.msg.net.NatBehaviour;
 import se.kth.swim.msg.net.NatPing;
 import se.kth.swim.msg.net.NatPong;
 import se.kth.swim.msg.net.NatPort;
@@ -44,6 +59,12 @@ import se.kth.swim.msg.net.NetNatPong;
 import se.kth.swim.msg.net.NetNatRequest;
 import se.kth.swim.msg.net.NetNatResponse;
 import se.kth.swim.msg.net.NetNatUpdate;
+import se.kth.swim.msg.net.NetPunchRequest;
+import se.kth.swim.msg.net.NetPunchResponse;
+import se.kth.swim.msg.net.NetRelayBundle;
+import se.kth.swim.msg.net.NodeStatus;
+import se.kth.swim.msg.net.PunchRequest;
+import se.kth.swim.msg.net.PunchResponse;
 import se.sics.kompics.ComponentDefinition;
 import se.sics.kompics.Handler;
 import se.sics.kompics.Init;
@@ -77,31 +98,92 @@ public class NatTraversalComp extends ComponentDefinition {
     private Positive<CroupierPort> croupier = requires(CroupierPort.class);
     private Positive<Timer> timer = requires(Timer.class);
     private Negative<NatPort> nat = provides(NatPort.class);
+    private Positive<MembershipPort> membership = requires(MembershipPort.class);
 
     private NatedAddress selfAddress;
     private final Random rand;
     
     private Map<UUID,NatedAddress> ackIds;
-    private  List<NatedAddress> croupierSample;
+    //send time of every nat ping waiting for its pong
+    private Map<UUID,Long> natPingSentAt;
+    //scores the open nodes of the croupier sample as relay parents
+    private final ParentSelector parentSelector;
+    //canonical addresses of the relay candidates, samples repeat them every cycle
+    private final AddressRegistry addresses;
+    //open nodes - the nated children relayed for and their traffic
+    private final RelayChildren children;
+    //probes sent through two parents, the second copy dropped on delivery
+    private final boolean parallelRelay;
+    private final DuplicateFilter duplicates;
+    //open nodes - messages to the same child coalesced for batchWindow ms,
+    //null when batching is off
+    private final RelayBatcher<NetMsg<Object>> batcher;
+    private final long batchWindow;
+    private Map<Integer,UUID> flushTimeouts;
+    
+    //nated nodes - when traffic last came through or from each relay, and
+    //how many nat pings in a row that traffic stood in for
+    private Map<Integer,Long> relayHeardAt;
+    private Map<Integer,Integer> suppressedPings;
+    //nated nodes - direct paths punched to other nated nodes, with the relays
+    //as rendezvous, when hole punching is on
+    private final boolean holePunching;
+    private final NatBehaviour behaviour;
+    private final DirectPaths directPaths;
     
     private UUID natTimeout;
+    private int natRounds;
+    
+    private static final int PARENTS = 2;
+    //candidates nat pinged along with the parents, ready to replace one
+    private static final int STANDBY = 2;
+    private static final long NAT_FAILURE_TIMEOUT = 5000;
+    private static final long NAT_PERIOD = 2000;
+    //standbys are only nat pinged for their rtt, every few nat periods
+    private static final int STANDBY_PING_ROUNDS = 2;
+    //a child that missed this many nat pings is no longer relayed for
+    private static final int CHILD_MISSED_PINGS = 4;
+    //nat pings in a row skipped for a relay that carried traffic, kept below
+    //CHILD_MISSED_PINGS so the relay never forgets a child
+    private static final int MAX_SUPPRESSED_PINGS = 2;
+    private static final int PARALLEL_RELAYS = 2;
+    private static final int DUPLICATE_WINDOW = 1024;
+    //a direct path silent for this long is closed, a peer that did not punch is
+    //reached through the relays until the retry
+    private static final long DIRECT_PATH_IDLE = 3 * NAT_PERIOD;
+    private static final long PUNCH_RETRY = 10 * NAT_PERIOD;
 
     public NatTraversalComp(NatTraversalInit init) {
         this.selfAddress = init.selfAddress;
         log.info("{} {} initiating...", new Object[]{selfAddress.getId(), (selfAddress.isOpen() ? "OPEN" : "NATED")});
         this.ackIds=new HashMap<UUID,NatedAddress>();
+        this.natPingSentAt=new HashMap<UUID,Long>();
+        this.relayHeardAt=new HashMap<Integer,Long>();
+        this.suppressedPings=new HashMap<Integer,Integer>();
         this.rand = new Random(init.seed);
-        this.croupierSample = new ArrayList<NatedAddress>();
+        this.addresses = new AddressRegistry();
+        this.parentSelector = new ParentSelector(rand, new RttEstimator(1, NAT_FAILURE_TIMEOUT, NAT_FAILURE_TIMEOUT));
+        this.children = new RelayChildren(init.natConfig.relayCapacity, CHILD_MISSED_PINGS * NAT_PERIOD, init.natConfig.maxChildRate, System.currentTimeMillis());
+        this.parallelRelay = init.natConfig.parallelRelay;
+        this.duplicates = new DuplicateFilter(DUPLICATE_WINDOW);
+        this.batchWindow = init.natConfig.relayBatchWindow;
+        this.batcher = batchWindow > 0 ? new RelayBatcher<NetMsg<Object>>(init.natConfig.relayBatchBytes) : null;
+        this.flushTimeouts = new HashMap<Integer,UUID>();
+        this.holePunching = init.natConfig.holePunching;
+        this.behaviour = init.natBehaviour;
+        this.directPaths = new DirectPaths(DIRECT_PATH_IDLE, NAT_FAILURE_TIMEOUT, PUNCH_RETRY);
         subscribe(handleStart, control);
         subscribe(handleStop, control);
         subscribe(handleIncomingMsg, network);
         subscribe(handleOutgoingMsg, local);
         subscribe(handleNatTimeout,timer);
         subscribe(handleFailureTimeout,timer);
+        subscribe(handleFlushTimeout,timer);
         subscribe(handleCroupierSample, croupier);
         subscribe(handleNetNatPing,network);
         subscribe(handleNetNatPong,network);
         subscribe(handleNetNatResponse,nat);
+        subscribe(handleMembershipChange,membership);
     }
 
     private Handler<Start> handleStart = new Handler<Start>() {
@@ -109,22 +191,29 @@ public class NatTraversalComp extends ComponentDefinition {
         @Override
         public void handle(Start event) {
             log.info("{} starting...", new Object[]{selfAddress.getId()});
+            //nated nodes ping their relays, open nodes report their relay load
+            natTimeout = scheduleNatTimeout();
             if (!selfAddress.isOpen()){
-            	natTimeout = scheduleNatTimeout();
-            	Set<NatedAddress> newParent = new HashSet<NatedAddress>();
-            	int i=0;
+            	//every nated node is booted with the same bootstrap parents -
+            	//shuffle them so the first relays are spread over all of them
+            	List<NatedAddress> bootstrapParents = new ArrayList<NatedAddress>();
     			for (NatedAddress selfParent: selfAddress.getParents()){
     				if (selfParent.isOpen()){
-    					newParent.add(selfParent);
-    					i++;
-    					if (i==2){
-    						break;
-    					}
+    					bootstrapParents.add(selfParent);
+    					parentSelector.offer(selfParent, null);
     				}
     			}
+    			Collections.shuffle(bootstrapParents, rand);
+            	Set<NatedAddress> newParent = new HashSet<NatedAddress>(
+            			bootstrapParents.subList(0, Math.min(PARENTS, bootstrapParents.size())));
     				selfAddress = new BasicNatedAddress(new BasicAddress(
     		    			selfAddress.getIp(), 12345, selfAddress.getId()),
     		    			NatType.NAT, new HashSet<NatedAddress>(newParent));
+    			//register with the relays right away, they only relay for registered children
+    			adoptParents();
+    			//and have swim gossip the trimmed parents, or peers keep routing
+    			//through bootstrap parents that do not relay for us
+    			trigger(new NetNatUpdate(selfAddress), nat);
             }
         }
 
@@ -134,10 +223,14 @@ public class NatTraversalComp extends ComponentDefinition {
         @Override
         public void handle(Stop event) {
             log.info("{} stopping...", new Object[]{selfAddress.getId()});
-            for (UUID id : ackIds.keySet()){
+            for (UUID id : new ArrayList<UUID>(ackIds.keySet())){
             	cancelFailureTimeout(id);
             }
             cancelNatTimeout(natTimeout);
+            for (UUID id : flushTimeouts.values()){
+            	cancelNatTimeout(id);
+            }
+            flushTimeouts.clear();
         }
 
     };
@@ -148,18 +241,38 @@ public class NatTraversalComp extends ComponentDefinition {
         public void handle(NetMsg<Object> msg) {
             log.info("{} received msg:{}", new Object[]{selfAddress.getId(), msg});
             Header<NatedAddress> header = msg.getHeader();
+            NetMsg raw = msg;
+            if (raw instanceof NetRelayBundle) {
+                if (selfAddress.isOpen()) {
+                    throw new RuntimeException("relay bundle received on open node - nat traversal logic error");
+                }
+                for (NetMsg<Object> relayed : ((NetRelayBundle) raw).getContent()) {
+                    handle(relayed);
+                }
+                return;
+            }
             if (header instanceof SourceHeader) {
                 if (!selfAddress.isOpen()) {
                     throw new RuntimeException("source header msg received on nated node - nat traversal logic error");
                 }
                 SourceHeader<NatedAddress> sourceHeader = (SourceHeader<NatedAddress>) header;
-                if (sourceHeader.getActualDestination().getParents().contains(selfAddress)) {
+                //only children registered through their nat pings are relayed for
+                int bytes = WireSize.estimate(msg);
+                if (children.isThrottled(sourceHeader.getActualDestination().getId())) {
+                    log.info("{} throttling relay message:{} for noisy child:{}", new Object[]{selfAddress.getId(), msg, sourceHeader.getActualDestination()});
+                    return;
+                }
+                if (children.relayed(sourceHeader.getActualDestination().getId(), bytes)) {
                     log.info("{} relaying message for:{}", new Object[]{selfAddress.getId(), sourceHeader.getSource()});
                     RelayHeader<NatedAddress> relayHeader = sourceHeader.getRelayHeader();
-                    trigger(msg.copyMessage(relayHeader), network);
+                    if (batcher == null) {
+                        trigger(msg.copyMessage(relayHeader), network);
+                    } else {
+                        batch(sourceHeader.getActualDestination(), msg.copyMessage(relayHeader), bytes);
+                    }
                     return;
                 } else {
-                    log.warn("{} received weird relay message:{} - dropping it", new Object[]{selfAddress.getId(), msg});
+                    log.warn("{} received relay message:{} for a node it does not relay for - dropping it", new Object[]{selfAddress.getId(), msg});
                     return;
                 }
             } else if (header instanceof RelayHeader) {
@@ -167,11 +280,39 @@ public class NatTraversalComp extends ComponentDefinition {
                     throw new RuntimeException("relay header msg received on open node - nat traversal logic error");
                 }
                 RelayHeader<NatedAddress> relayHeader = (RelayHeader<NatedAddress>) header;
+                if (parallelRelay && isDuplicate(relayHeader.getActualSource(), msg.getContent())) {
+                    log.info("{} dropping duplicate relayed message:{} from:{}", new Object[]{selfAddress.getId(), msg, relayHeader.getActualSource()});
+                    return;
+                }
+                heardFrom(relayHeader.getSource());
+                if (holePunching && !relayHeader.getActualSource().isOpen()) {
+                    //the peer sends through the relays - it dropped its direct path
+                    directPaths.relayed(relayHeader.getActualSource().getId(), System.currentTimeMillis());
+                }
+                if (handlePunch(relayHeader.getActualSource(), msg.getContent())) {
+                    return;
+                }
                 log.info("{} delivering relayed message:{} from:{}", new Object[]{selfAddress.getId(), msg, relayHeader.getActualSource()});
                 Header<NatedAddress> originalHeader = relayHeader.getActualHeader();
                 trigger(msg.copyMessage(originalHeader), local);
                 return;
             } else {
+                if (selfAddress.isOpen()) {
+                    children.touch(header.getSource().getId(), System.currentTimeMillis());
+                } else if (!header.getSource().isOpen()) {
+                    //our nat only lets in nated peers we punched a hole for
+                    long now = System.currentTimeMillis();
+                    if (!directPaths.accepts(header.getSource().getId(), now)) {
+                        log.info("{} nat drops direct message:{} from:{}", new Object[]{selfAddress.getId(), msg, header.getSource()});
+                        return;
+                    }
+                    directPaths.heard(header.getSource().getId(), now);
+                    if (handlePunch(header.getSource(), msg.getContent())) {
+                        return;
+                    }
+                } else {
+                    heardFrom(header.getSource());
+                }
                 log.info("{} delivering direct message:{} from:{}", new Object[]{selfAddress.getId(), msg, header.getSource()});
                 trigger(msg, local);
                 return;
@@ -184,90 +325,288 @@ public class NatTraversalComp extends ComponentDefinition {
 
         @Override
         public void handle(NetMsg<Object> msg) {
+            send(msg);
+        }
 
-            log.trace("{} sending msg:{}", new Object[]{selfAddress.getId(), msg});
-            Header<NatedAddress> header = msg.getHeader();
-            if(header.getDestination().isOpen()) {
-                log.info("{} sending direct message:{} to:{}", new Object[]{selfAddress.getId(), msg, header.getDestination()});
-                trigger(msg, network);
-                return;
-            } else {
-            	//log.info("parents of {} is {}",new Object[]{header.getDestination(),header.getDestination().getParents()});
-                if(header.getDestination().getParents().isEmpty()) {
-                    throw new RuntimeException("nated node with no parents");
+    };
+    
+    private void send(NetMsg<Object> msg){
+        log.trace("{} sending msg:{}", new Object[]{selfAddress.getId(), msg});
+        Header<NatedAddress> header = msg.getHeader();
+        if(header.getDestination().isOpen()) {
+            log.info("{} sending direct message:{} to:{}", new Object[]{selfAddress.getId(), msg, header.getDestination()});
+            trigger(msg, network);
+            return;
+        } else {
+        	//log.info("parents of {} is {}",new Object[]{header.getDestination(),header.getDestination().getParents()});
+            if(header.getDestination().getParents().isEmpty()) {
+                throw new RuntimeException("nated node with no parents");
+            }
+            if (holePunching && !selfAddress.isOpen()) {
+                NatedAddress peer = header.getDestination();
+                long now = System.currentTimeMillis();
+                if (directPaths.isDirect(peer.getId(), now)) {
+                    log.info("{} sending message:{} on direct path to:{}", new Object[]{selfAddress.getId(), msg, peer.getId()});
+                    trigger(msg, network);
+                    return;
                 }
-                NatedAddress parent = randomNode(header.getDestination().getParents());
+                //peers we probe are worth a direct path, the relays are the rendezvous
+                if (msg.getContent() instanceof Sequenced && directPaths.attempt(peer.getId(), now)) {
+                    log.info("{} punching a hole to:{}", new Object[]{selfAddress.getId(), peer.getId()});
+                    send((NetMsg) new NetPunchRequest(selfAddress, peer, new PunchRequest(behaviour)));
+                }
+            }
+            //fastest parents we know of, so relayed probes are not delayed - probes
+            //go through two of them, so a dead parent does not cause a false suspicion
+            int relays = parallelRelay && msg.getContent() instanceof Sequenced ? PARALLEL_RELAYS : 1;
+            List<NatedAddress> parents = parentSelector.fastest(header.getDestination().getParents(), relays);
+            for (NatedAddress parent : parents) {
                 SourceHeader<NatedAddress> sourceHeader = new SourceHeader(header, parent);
                 log.info("{} sending message:{} to relay:{}", new Object[]{selfAddress.getId(), msg, parent});
                 trigger(msg.copyMessage(sourceHeader), network);
-                return;
             }
+            return;
         }
+    }
+    
+    //hole punching negotiation, relayed or on the direct path
+    //@return true if the content was a punch message
+    private boolean handlePunch(NatedAddress peer, Object content){
+    	long now = System.currentTimeMillis();
+    	if (content instanceof PunchRequest) {
+    		boolean punched = holePunching && behaviour.canPunch(((PunchRequest) content).getBehaviour());
+    		log.info("{} punch request from:{} - {}", new Object[]{selfAddress.getId(), peer.getId(), punched ? "punched" : "refused"});
+    		if (punched) {
+    			//answer on the new direct path, the requester is waiting for it
+    			directPaths.punched(peer.getId(), now);
+    			trigger(new NetPunchResponse(selfAddress, peer, new PunchResponse(true)), network);
+    		} else {
+    			send((NetMsg) new NetPunchResponse(selfAddress, peer, new PunchResponse(false)));
+    		}
+    		return true;
+    	}
+    	if (content instanceof PunchResponse) {
+    		if (((PunchResponse) content).isPunched()) {
+    			log.info("{} direct path to:{}", new Object[]{selfAddress.getId(), peer.getId()});
+    			directPaths.punched(peer.getId(), now);
+    		}
+    		return true;
+    	}
+    	return false;
+    }
+    
+    private void batch(NatedAddress child, NetMsg<Object> relayed, int bytes){
+    	if (batcher.add(child.getId(), relayed, bytes)) {
+    		ScheduleTimeout st = new ScheduleTimeout(batchWindow);
+    		FlushTimeout ft = new FlushTimeout(st, child);
+    		st.setTimeoutEvent(ft);
+    		flushTimeouts.put(child.getId(), ft.getTimeoutId());
+    		trigger(st, timer);
+    	}
+    	if (batcher.isFull(child.getId())) {
+    		UUID flushId = flushTimeouts.remove(child.getId());
+    		if (flushId != null) {
+    			cancelNatTimeout(flushId);
+    		}
+    		flush(child);
+    	}
+    }
+    
+    private void flush(NatedAddress child){
+    	List<NetMsg<Object>> relayed = batcher.drain(child.getId());
+    	if (relayed.size() == 1) {
+    		trigger(relayed.get(0), network);
+    	} else if (relayed.size() > 1) {
+    		log.info("{} relaying {} bundled messages to:{}", new Object[]{selfAddress.getId(), relayed.size(), child.getId()});
+    		trigger(new NetRelayBundle(selfAddress, child, relayed), network);
+    	}
+    }
+    
+    private Handler<FlushTimeout> handleFlushTimeout = new Handler<FlushTimeout>(){
 
+		@Override
+		public void handle(FlushTimeout event) {
+			UUID flushId = flushTimeouts.get(event.child.getId());
+			if (flushId == null || !flushId.equals(event.getTimeoutId())) {
+				return;
+			}
+			flushTimeouts.remove(event.child.getId());
+			flush(event.child);
+		}
+    	
     };
     
+    private boolean isDuplicate(NatedAddress source, Object content){
+    	if (!(content instanceof Sequenced)) {
+    		return false;
+    	}
+    	return !duplicates.firstSeen(source.getId(), content.getClass(), ((Sequenced) content).getSn());
+    }
+    
     private Handler<FailureTimeout> handleFailureTimeout = new Handler<FailureTimeout>(){
 
 		@Override
 		public void handle(FailureTimeout event) {
 			// TODO Auto-generated method stub
-			log.info("{} didn't receive Nat Pong {} is dead!", new Object[]{selfAddress.getId(),ackIds.get(event.getTimeoutId())});
+			NatedAddress dead = ackIds.get(event.getTimeoutId());
 			cancelFailureTimeout(event.getTimeoutId());
-			//select new parents
-			ackIds.remove(event.getTimeoutId());
-			Map<UUID,NatedAddress> tmpMap = new HashMap<UUID, NatedAddress>();
-			tmpMap.putAll(ackIds);
-			if (croupierSample.size()>1){
-				for (UUID ids:tmpMap.keySet()){
-					cancelFailureTimeout(ids);
-					ackIds.remove(ids);
-				}
-				Set<NatedAddress> parents=new HashSet<NatedAddress>();
-				if (croupierSample.size()==1){
-					parents.add(croupierSample.get(0));
-				}else {
-					Random random = new Random();
-					int rand = random.nextInt(croupierSample.size());
-					if(rand>1){
-						parents.add(croupierSample.get(rand-1));
-					}else {
-						parents.add(croupierSample.get(rand));
-					}
-					rand = random.nextInt(croupierSample.size());
-					if(rand>1){
-						parents.add(croupierSample.get(rand-1));
-					}else {
-						parents.add(croupierSample.get(rand));
-					}
-					
-				}
-				if (parents!=null){
-						trigger(new NetNatRequest(parents), nat);						
-				}
-			}else {
-				log.info("{} could not find croupier node",selfAddress.getId());
+			if (dead == null) {
+				return;
 			}
+			if (!isParent(dead)) {
+				parentSelector.failed(dead.getId());
+				log.info("{} standby relay {} did not answer, dropped", new Object[]{selfAddress.getId(), dead.getId()});
+				return;
+			}
+			//a silent parent that missed its nat pong, swim may not know yet
+			log.info("{} didn't receive Nat Pong from relay {}, replacing it", new Object[]{selfAddress.getId(),dead.getId()});
+			parentSelector.failed(dead.getId());
+			replaceParent(dead);
+		}
+    	
+    };
+    
+    //parent failover follows the failure detector - a suspected relay is
+    //swapped at once instead of after a separate nat timeout
+    private Handler<MembershipChange> handleMembershipChange = new Handler<MembershipChange>(){
 
-			
+		@Override
+		public void handle(MembershipChange event) {
+			NatedAddress member = event.getMember();
+			log.info("{} member {} is {}", new Object[]{selfAddress.getId(), member.getId(), event.getStatus()});
+			if (selfAddress.isOpen()) {
+				//frees the relay capacity of a dead child
+				if (event.getStatus() == NodeStatus.FAILED) {
+					children.remove(member.getId());
+				}
+				return;
+			}
+			parentSelector.failed(member.getId());
+			if (isParent(member)) {
+				log.info("{} relay {} is {}, replacing it", new Object[]{selfAddress.getId(), member.getId(), event.getStatus()});
+				replaceParent(member);
+			}
 		}
     	
     };
     
+    //the other parents stay, only the lost one is swapped for the best standby
+    private void replaceParent(NatedAddress lost){
+		Set<NatedAddress> parents = new HashSet<NatedAddress>();
+		for (NatedAddress parent : selfAddress.getParents()) {
+			if (!parent.getId().equals(lost.getId())) {
+				parents.add(parent);
+			}
+		}
+		NatedAddress replacement = parentSelector.replacement(selfAddress.getParents());
+		if (replacement != null) {
+			parents.add(replacement);
+		}
+		if (!parents.isEmpty()) {
+			log.info("{} replaces relay {} by {}", new Object[]{selfAddress.getId(), lost.getId(), replacement});
+			trigger(new NetNatRequest(parents), nat);
+		} else {
+			log.info("{} could not find croupier node",selfAddress.getId());
+		}
+    }
+    
     private Handler<NatTimeout> handleNatTimeout = new Handler<NatTimeout>(){
 
 		@Override
 		public void handle(NatTimeout event) {
 			// TODO Auto-generated method stub
+			if (selfAddress.isOpen()){
+				children.roll(System.currentTimeMillis());
+				RelayLoad load = children.load();
+				log.info("{} relay load {}", new Object[]{selfAddress.getId(), load});
+				trigger(new CroupierUpdate.View(load), croupier);
+				return;
+			}
+			long now = System.currentTimeMillis();
+			dropUnansweredKeepalives(now);
 			Set<NatedAddress> parents = selfAddress.getParents();
 			for (NatedAddress parent:parents){
-				UUID natId = scheduleFailureTimeout(parent);
+				boolean carried = carriedTraffic(parent, now);
+				if (carried && suppressPing(parent)) {
+					log.info(" {} relay {} carried traffic, skips Nat Ping",new Object[]{selfAddress.getId(),parent.getId()});
+					continue;
+				}
 				log.info(" {} sends periodic Nat Ping to relay {}",new Object[]{selfAddress.getId(),parent.getId()});
-				trigger(new NetNatPing(selfAddress, parent, new NatPing(natId)),network);
+				//a relay that carried traffic is alive, its ping only keeps us
+				//registered and goes without a failure timeout
+				natPing(parent, true, !carried);
+			}
+			//keep the standbys warm - measured and known to be alive
+			if (natRounds++ % STANDBY_PING_ROUNDS == 0) {
+				for (NatedAddress standby : parentSelector.standby(parents, STANDBY)){
+					natPing(standby, false, true);
+				}
 			}
 		}
     	
     };
     
+    private void adoptParents(){
+    	for (NatedAddress parent : selfAddress.getParents()) {
+    		natPing(parent, true, true);
+    	}
+    }
+    
+    //@param watched schedules a failure timeout for the nat pong
+    private void natPing(NatedAddress relay, boolean adopt, boolean watched){
+    	UUID natId = watched ? scheduleFailureTimeout(relay) : UUID.randomUUID();
+    	natPingSentAt.put(natId, System.currentTimeMillis());
+    	trigger(new NetNatPing(selfAddress, relay, new NatPing(natId, adopt)),network);
+    }
+    
+    private void heardFrom(NatedAddress relay){
+    	if (relay != null && isParent(relay)) {
+    		relayHeardAt.put(relay.getId(), System.currentTimeMillis());
+    	}
+    }
+    
+    private boolean carriedTraffic(NatedAddress parent, long now){
+    	Long heardAt = relayHeardAt.get(parent.getId());
+    	if (heardAt != null && now - heardAt < NAT_PERIOD) {
+    		return true;
+    	}
+    	suppressedPings.remove(parent.getId());
+    	return false;
+    }
+    
+    //swim traffic through a parent in the last nat period stands in for the
+    //nat ping, a keepalive still goes out after MAX_SUPPRESSED_PINGS skips
+    private boolean suppressPing(NatedAddress parent){
+    	Integer suppressed = suppressedPings.get(parent.getId());
+    	int skips = suppressed == null ? 0 : suppressed;
+    	if (skips < MAX_SUPPRESSED_PINGS) {
+    		suppressedPings.put(parent.getId(), skips + 1);
+    		return true;
+    	}
+    	suppressedPings.remove(parent.getId());
+    	return false;
+    }
+    
+    //keepalives without a failure timeout are forgotten once their pong is late
+    private void dropUnansweredKeepalives(long now){
+    	Iterator<Map.Entry<UUID, Long>> it = natPingSentAt.entrySet().iterator();
+    	while (it.hasNext()) {
+    		Map.Entry<UUID, Long> sent = it.next();
+    		if (!ackIds.containsKey(sent.getKey()) && now - sent.getValue() > NAT_FAILURE_TIMEOUT) {
+    			it.remove();
+    		}
+    	}
+    }
+    
+    private boolean isParent(NatedAddress address){
+    	for (NatedAddress parent : selfAddress.getParents()) {
+    		if (parent.getId().equals(address.getId())) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
     private Handler<NetNatPing> handleNetNatPing = new Handler<NetNatPing>(){
 
 		@Override
@@ -275,7 +614,19 @@ public class NatTraversalComp extends ComponentDefinition {
 			// TODO Auto-generated method stub
 			log.info("receiving net nat ping");
 			log.info(" {} received periodic Nat Ping to from NatedNode {}",new Object[]{selfAddress.getId(),event.getSource().getId()});
-			trigger(new NetNatPong(selfAddress,event.getSource(),new NatPong(event.getContent().getSn())), network);
+			int child = event.getSource().getId();
+			boolean accepted;
+			if (event.getContent().isAdopt()) {
+				accepted = children.admit(child, System.currentTimeMillis());
+			} else {
+				accepted = children.isChild(child) || children.hasSpare();
+			}
+			NatedAddress redirect = null;
+			if (!accepted) {
+				redirect = parentSelector.leastLoaded(child);
+				log.info("{} relay full, refuses {} and redirects to {}", new Object[]{selfAddress.getId(), child, redirect});
+			}
+			trigger(new NetNatPong(selfAddress,event.getSource(),new NatPong(event.getContent().getSn(), accepted, children.load(), redirect)), network);
 		}
     };
     
@@ -285,7 +636,28 @@ public class NatTraversalComp extends ComponentDefinition {
 		public void handle(NetNatPong event) {
 			// TODO Auto-generated method stub
 			log.info("{} received nat pong from Relay parent {}",new Object[]{selfAddress.getId(),event.getSource().getId()});
-			cancelFailureTimeout(event.getContent().getSn());
+			NatPong pong = event.getContent();
+			Long sentAt = natPingSentAt.remove(pong.getSn());
+			if (sentAt == null) {
+				return;
+			}
+			if (ackIds.containsKey(pong.getSn())) {
+				cancelFailureTimeout(pong.getSn());
+			}
+			NatedAddress relay = event.getSource();
+			parentSelector.rttSample(relay.getId(), System.currentTimeMillis() - sentAt);
+			if (pong.isAccepted()) {
+				parentSelector.offer(relay, pong.getLoad());
+				return;
+			}
+			log.info("{} refused by relay {}, redirected to {}", new Object[]{selfAddress.getId(), relay.getId(), pong.getRedirect()});
+			parentSelector.failed(relay.getId());
+			if (pong.getRedirect() != null && !pong.getRedirect().getId().equals(selfAddress.getId())) {
+				parentSelector.offer(pong.getRedirect(), null);
+			}
+			if (isParent(relay)) {
+				replaceParent(relay);
+			}
 		}
     	
     };
@@ -316,6 +688,7 @@ public class NatTraversalComp extends ComponentDefinition {
 //		    			NatType.NAT, adresses);
 			//}
 	      log.info("Node {} new parents are: {}", selfAddress.getId(), selfAddress.getParents());
+	      adoptParents();
 	      
 	      trigger(new NetNatUpdate(selfAddress), nat);
 		}
@@ -323,7 +696,7 @@ public class NatTraversalComp extends ComponentDefinition {
     };
     
     private UUID scheduleNatTimeout(){
-    	SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(2000, 2000);
+    	SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(NAT_PERIOD, NAT_PERIOD);
         NatTimeout sc = new NatTimeout(spt);
         spt.setTimeoutEvent(sc);
         natTimeout = sc.getTimeoutId();
@@ -332,12 +705,12 @@ public class NatTraversalComp extends ComponentDefinition {
     }
     
     private UUID scheduleFailureTimeout(NatedAddress address){
-    	ScheduleTimeout spt = new ScheduleTimeout(5000);
+    	ScheduleTimeout spt = new ScheduleTimeout(NAT_FAILURE_TIMEOUT);
         FailureTimeout sc = new FailureTimeout(spt);
         spt.setTimeoutEvent(sc);
         ackIds.put(sc.getTimeoutId(),address);
         trigger(spt, timer);
-        return natTimeout;
+        return sc.getTimeoutId();
     }
     
     private void cancelNatTimeout(UUID id){
@@ -348,6 +721,7 @@ public class NatTraversalComp extends ComponentDefinition {
     private void cancelFailureTimeout(UUID id){
     	CancelTimeout cpt = new CancelTimeout(id);
         ackIds.remove(id);
+        natPingSentAt.remove(id);
         trigger(cpt, timer);
     }
     
@@ -356,33 +730,35 @@ public class NatTraversalComp extends ComponentDefinition {
         public void handle(CroupierSample event) {
             log.info("{} croupier public nodes:{}", selfAddress.getBaseAdr(), event.publicSample);
             //use this to change parent in case it died
-			croupierSample.clear();
 			Iterator<Container<NatedAddress, Object>> iterator = event.publicSample.iterator();
 			while (iterator.hasNext()) {
-				croupierSample.add(iterator.next().getSource());
+				Container<NatedAddress, Object> container = iterator.next();
+				NatedAddress candidate = container.getSource();
+				if (!candidate.getId().equals(selfAddress.getId())) {
+					//open nodes advertise their relay load as croupier view
+					RelayLoad load = null;
+					if (container.getContent() instanceof RelayLoad) {
+						load = (RelayLoad) container.getContent();
+					}
+					parentSelector.offer(addresses.intern(candidate), load);
+				}
 			}
-			log.info("{} croupier sample nodes:{}", selfAddress.getBaseAdr(), croupierSample.toString());
+			log.info("{} relay candidates:{}", selfAddress.getBaseAdr(), parentSelector.size());
         }
     };
     
-    private NatedAddress randomNode(Set<NatedAddress> nodes) {
-        int index = rand.nextInt(nodes.size());
-        Iterator<NatedAddress> it = nodes.iterator();
-        while(index > 0) {
-            it.next();
-            index--;
-        }
-        return it.next();
-    }
-
     public static class NatTraversalInit extends Init<NatTraversalComp> {
 
         public final NatedAddress selfAddress;
         public final long seed;
+        public final NatConfig natConfig;
+        public final NatBehaviour natBehaviour;
 
-        public NatTraversalInit(NatedAddress selfAddress, long seed) {
+        public NatTraversalInit(NatedAddress selfAddress, long seed, NatConfig natConfig, NatBehaviour natBehaviour) {
             this.selfAddress = selfAddress;
             this.seed = seed;
+            this.natConfig = natConfig;
+            this.natBehaviour = natBehaviour;
         }
     }
     
@@ -395,6 +771,17 @@ public class NatTraversalComp extends ComponentDefinition {
     	
     }
     
+    private static class FlushTimeout extends Timeout{
+
+    	private final NatedAddress child;
+
+		protected FlushTimeout(ScheduleTimeout request, NatedAddress child) {
+			super(request);
+			this.child = child;
+		}
+    	
+    }
+    
     private static class FailureTimeout extends Timeout{
 
 		protected FailureTimeout(ScheduleTimeout request) {
@@ -23,27 +23,42 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import se.kth.swim.internal.AddressRegistry;
+import se.kth.swim.internal.DisseminationBuffer;
+import se.kth.swim.internal.LocalHealth;
+import se.kth.swim.internal.MembershipTable;
+import se.kth.swim.internal.ProbeList;
+import se.kth.swim.internal.ProbeTable;
+import se.kth.swim.internal.ProbeTable.Probe;
+import se.kth.swim.internal.RouteTable;
+import se.kth.swim.internal.RttEstimator;
+import se.kth.swim.internal.Suspicion;
 import se.kth.swim.msg.FinalPong;
 import se.kth.swim.msg.IndirectPong;
-import se.kth.swim.msg.PiggyBackElement;
+import se.kth.swim.msg.Nack;
+import se.kth.swim.msg.PiggybackBatch;
 import se.kth.swim.msg.Ping;
 import se.kth.swim.msg.PingReq;
 import se.kth.swim.msg.Pong;
+import se.kth.swim.msg.RelayRoute;
 import se.kth.swim.msg.Status;
 import se.kth.swim.msg.net.IndirectPing;
+import se.kth.swim.msg.net.MembershipChange;
+import se.kth.swim.msg.net.MembershipPort;
 import se.kth.swim.msg.net.NatPort;
 import se.kth.swim.msg.net.NetFinalPong;
 import se.kth.swim.msg.net.NetIndirectPing;
 import se.kth.swim.msg.net.NetIndirectPong;
+import se.kth.swim.msg.net.NetNack;
 import se.kth.swim.msg.net.NetNatRequest;
 import se.kth.swim.msg.net.NetNatResponse;
 import se.kth.swim.msg.net.NetNatUpdate;
@@ -55,6 +70,7 @@ import se.kth.swim.msg.net.NodeStatus;
 import se.sics.kompics.ComponentDefinition;
 import se.sics.kompics.Handler;
 import se.sics.kompics.Init;
+import se.sics.kompics.Negative;
 import se.sics.kompics.Positive;
 import se.sics.kompics.Start;
 import se.sics.kompics.Stop;
@@ -67,6 +83,8 @@ import se.sics.kompics.timer.Timeout;
 import se.sics.kompics.timer.Timer;
 import se.sics.p2ptoolbox.util.network.NatType;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
 
 /**
  * @author Alex Ormenisan <aaor@sics.se>
@@ -77,55 +95,84 @@ public class SwimComp extends ComponentDefinition {
     private Positive<Network> network = requires(Network.class);
     private Positive<Timer> timer = requires(Timer.class);
     private Positive<NatPort> nat = requires(NatPort.class);
+    private Negative<MembershipPort> membership = provides(MembershipPort.class);
     
     private NatedAddress selfAddress;
     private final Set<NatedAddress> bootstrapNodes;
     private final NatedAddress aggregatorAddress;
-    private final Map<Integer,PiggyBackElement> aliveNodes;
-    private final Map<Integer,PiggyBackElement> failedNodes;
-    private final Map<Integer,PiggyBackElement> suspectedNodes;
-    private final Map<Integer,PiggyBackElement> piggybacked;
+    //alive (and new), suspected and failed members
+    private final MembershipTable members;
+    //one address instance per node and route, shared by the table and the piggybacks
+    private final AddressRegistry addresses;
+    //newest relay route of every nated node, parent changes are gossiped as route deltas
+    private final RouteTable routes;
+    private final int routesPerMessage;
+    //recent membership changes still to be gossiped
+    private final DisseminationBuffer disseminationBuffer;
 
     private UUID pingTimeoutId;
     private UUID statusTimeoutId;
-    private UUID ackTimeoutId;
-    private UUID suspectTimeoutId;
     private int receivedPings = 0;
     
     //number of k nodes to send indirect ping
     private final int k=3;
+    //ack timeout before the first rtt sample and its upper bound, so relays
+    //still nack within the suspicion timeout of the requester
+    private static final long ACK_TIMEOUT = 2000;
+    private static final long MIN_ACK_TIMEOUT = 200;
     //implementation of the round robin protocol
-    private  int robin =0;
-    
-    private Map<UUID,NatedAddress> ackids = new HashMap<UUID,NatedAddress>();
-    private Map<UUID,NatedAddress> suspectids = new HashMap<UUID,NatedAddress>();
-    
-    Double lamdalogn;
+    private final ProbeList probeList;
+    
+    //pings waiting for an ack - ours and the indirect ones we relay
+    private final ProbeTable probes;
+    //our running suspicions by sequence number (the sn of their ping-reqs)
+    private Map<Integer,Suspicion> suspectids = new HashMap<Integer,Suspicion>();
+    private Map<Integer,Integer> suspicions = new HashMap<Integer,Integer>();
+    //current timer of each suspicion, rescheduled when confirmations arrive
+    private Map<Integer,UUID> suspectTimers = new HashMap<Integer,UUID>();
+    
+    //lifeguard local health awareness
+    private final LocalHealth health;
+    private final int suspicionMaxMultiplier;
+    //ack timeouts follow the measured round trip times
+    private final RttEstimator rtt;
 
     public SwimComp(SwimInit init) {
         this.selfAddress = init.selfAddress;
         log.info("{} initiating...", selfAddress);
         
-        this.ackids= new HashMap<UUID,NatedAddress>();
-        this.suspectids= new HashMap<UUID,NatedAddress>();
+        //sequence numbers start at the boot time, a restarted node counts up
+        //from past anything it sent before it went down
+        this.probes= new ProbeTable((int) System.currentTimeMillis());
+        this.suspectids= new HashMap<Integer,Suspicion>();
+        this.suspicions= new HashMap<Integer,Integer>();
+        this.suspectTimers= new HashMap<Integer,UUID>();
+        this.health = new LocalHealth(init.swimConfig.localHealthMax);
+        this.suspicionMaxMultiplier = init.swimConfig.suspicionMaxMultiplier;
+        this.rtt = new RttEstimator(MIN_ACK_TIMEOUT, ACK_TIMEOUT, ACK_TIMEOUT);
         
         this.bootstrapNodes = init.bootstrapNodes;
         this.aggregatorAddress = init.aggregatorAddress;
-        this.aliveNodes=new HashMap<Integer,PiggyBackElement>();
-        this.failedNodes=new HashMap<Integer,PiggyBackElement>();
-        this.suspectedNodes=new HashMap<Integer,PiggyBackElement>();
-        this.piggybacked=new HashMap<Integer,PiggyBackElement>();
+        this.members = new MembershipTable(bootstrapNodes.size() + 1);
+        this.addresses = new AddressRegistry();
+        this.routes = new RouteTable();
+        this.routesPerMessage = init.swimConfig.piggybackSize;
+        this.selfAddress = addresses.intern(selfAddress);
+        this.probeList = new ProbeList(new Random(init.seed));
+        this.disseminationBuffer = new DisseminationBuffer(members, init.swimConfig.piggybackSize, init.swimConfig.disseminationMultiplier);
 
         for (NatedAddress address: bootstrapNodes){
-        	if (!address.equals(selfAddress)){
-        		this.aliveNodes.put(address.getId(),new PiggyBackElement(address,NodeStatus.ALIVE,0));     		
+        	if (!address.getId().equals(selfAddress.getId())){
+        		members.put(addresses.intern(address), NodeStatus.ALIVE, 0);
+        		disseminate(address.getId());
         	}else {
         		log.info("{} is self and it was not added ",selfAddress);
         	}
         	
         }
         //bootstrapNodes.add(selfAddress);
-        aliveNodes.put(selfAddress.getId(), new PiggyBackElement(selfAddress, NodeStatus.NEW));
+        members.put(selfAddress, NodeStatus.NEW, 0);
+        disseminate(selfAddress.getId());
         subscribe(handleStart, control);
         subscribe(handleStop, control);
         subscribe(handleNetPing, network);
@@ -138,6 +185,7 @@ public class SwimComp extends ComponentDefinition {
         subscribe(handleNetIndirectPing,network);
         subscribe(handleNetIndirectPong,network);
         subscribe(handleNetFinalPong,network);
+        subscribe(handleNetNack,network);
         subscribe(handleNetNatRequest, nat);
 		subscribe(handleNetNatUpdate, nat);
 
@@ -167,10 +215,10 @@ public class SwimComp extends ComponentDefinition {
             if (statusTimeoutId != null) {
                 cancelPeriodicStatus();
             }
-            for (UUID ackId: ackids.keySet()){
-            	cancelWaitingAck(ackId);
+            for (int seq: probes.seqs()){
+            	cancelWaitingAck(seq);
             }
-            for (UUID suspectId: suspectids.keySet()){
+            for (Integer suspectId: new ArrayList<Integer>(suspectids.keySet())){
             	cancelSuspected(suspectId);
             }
         }
@@ -189,10 +237,9 @@ public class SwimComp extends ComponentDefinition {
 			if (!event.getContent().getNodes().isEmpty()) {
 				// merge lists
 				mergeViews(event.getContent().getNodes());
-				preparePiggyBackList();
 			}
 			trigger(new NetPong(selfAddress, source, new Pong(event
-					.getContent().getSn(), piggybacked)), network);
+					.getContent().getSn(), preparePiggyBackList())), network);
 		}
 
 	};
@@ -203,7 +250,9 @@ public class SwimComp extends ComponentDefinition {
 		public void handle(NetPong event) {
 			// TODO Auto-generated method stub
 			Pong content = event.getContent();
-			if (ackids.containsKey(content.getSn())) {
+			Probe probe = probes.get(content.getSn());
+			if (probe != null && !probe.isRelayed()) {
+				sampleRtt(probe);
 				log.info("{} received piggybacked pong {} from {}",
 						new Object[] { selfAddress.getId(), content.toString(),
 								event.getSource().getId() });
@@ -213,7 +262,8 @@ public class SwimComp extends ComponentDefinition {
 				checkSource(event.getSource());
 				// received indirect pong from alive node
 				cancelWaitingAck(content.getSn());
-				// if received pong, then forward to initial node
+				// answered probe, we are healthy enough
+				health.lower();
 			}
 		}
 
@@ -234,7 +284,34 @@ public class SwimComp extends ComponentDefinition {
 					mergeViews(content.getNodes());
 				}
 				checkSource(event.getSource());
-			cancelSuspected(event.getContent().getSn());
+			Suspicion suspicion = suspectids.get(content.getSn());
+			if (suspicion != null) {
+				//the suspected node answered a relay, so it is not dead
+				int slot = members.indexOf(suspicion.getTarget());
+				if (slot != -1 && members.statusAt(slot) == NodeStatus.SUSPECTED) {
+					members.setStatusAt(slot, NodeStatus.ALIVE);
+				}
+				cancelSuspected(content.getSn());
+			}
+		}
+		
+	};
+	
+	private Handler<NetNack> handleNetNack = new Handler<NetNack>(){
+
+		@Override
+		public void handle(NetNack event) {
+			Nack content = event.getContent();
+			log.info("{} received nack {} from {}", new Object[] { selfAddress.getId(), content.toString(), event.getSource().getId() });
+			if (content.getNodes() != null) {
+				mergeViews(content.getNodes());
+			}
+			checkSource(event.getSource());
+			//the relay is reachable, only the target did not answer
+			Suspicion suspicion = suspectids.get(content.getSn());
+			if (suspicion != null) {
+				suspicion.answered(event.getSource().getId());
+			}
 		}
 		
 	};
@@ -244,23 +321,26 @@ public class SwimComp extends ComponentDefinition {
     	//end of the periodic ping, now the systems chooses a node to be pinged
         @Override
         public void handle(PingTimeout event) {
+        	pingTimeoutId = null;
         	//select random peer for bootstrap node
         	//should it be alive nodes or suspected
-			PiggyBackElement value = selectRoundRobinNode(null);
-			if (value!=null && (!ackids.containsValue(value.getAddress()))){
-				preparePiggyBackList();
+			NatedAddress value = selectRoundRobinNode();
+			if (value!=null && !probes.isProbing(value.getId())){
 				log.info("{} sending periodic ping to partner:{}", new Object[] {
-						selfAddress.getId(), value.getAddress() });
-				scheduleWaitingAck(value.getAddress());				
+						selfAddress.getId(), value });
+				Probe probe = scheduleWaitingAck(value);				
 				//NULL as a parameter on Ping - because it is a direct ping and not an indirect ping
-				trigger(new NetPing(selfAddress, value.getAddress(), new Ping(ackTimeoutId,piggybacked, null,null)), network);
+				trigger(new NetPing(selfAddress, value, new Ping(probe.getSeq(),preparePiggyBackList(), null,0)), network);
 			}else if (value!=null){
 				log.info("{} will not send periodic ping to partner:{} - already wait for an ack", new Object[] {
-						selfAddress.getId(), value.getAddress() });
-			}else if (value==null){
-				//if i have no nodes to ping, cancel periodic ping
-				cancelPeriodicPing();
-				log.info("{} has no peers to ping - aliveNodes: {}, suspectedNodes : {}, failedNodes: {}",new Object[]{selfAddress.getId(),aliveNodes.size(),suspectedNodes.size(),failedNodes.size()});
+						selfAddress.getId(), value });
+			}
+			if (value!=null){
+				//next round, the interval follows our local health
+				schedulePeriodicPing();
+			}else {
+				//if i have no nodes to ping, the periodic ping stops here
+				log.info("{} has no peers to ping - aliveNodes: {}, suspectedNodes : {}, failedNodes: {}",new Object[]{selfAddress.getId(),aliveCount(),members.count(NodeStatus.SUSPECTED),members.count(NodeStatus.FAILED)});
 			}
         }
 
@@ -274,14 +354,12 @@ public class SwimComp extends ComponentDefinition {
         @Override
         public void handle(StatusTimeout event) {
 
-        	log.info("{} sending status to aggregator:{} alive {} suspected {} failed {} total {}", new Object[]{selfAddress.getId(), aggregatorAddress,aliveNodes.size(),suspectedNodes.size(), failedNodes.size()});
-//            for (Integer key: aliveNodes.keySet()){
-//            	log.info("Alive Key:"+key);
-//            }
-//            for (Integer key: failedNodes.keySet()){
-//            	log.info("Failed Key:"+key);
-//            }
-        	trigger(new NetStatus(selfAddress, aggregatorAddress, new Status(receivedPings,aliveNodes.size(),suspectedNodes.size(),failedNodes.size())), network);
+        	//counts are kept by the membership table, no scanning
+        	int alive = aliveCount();
+        	int suspected = members.count(NodeStatus.SUSPECTED);
+        	int failed = members.count(NodeStatus.FAILED);
+        	log.info("{} sending status to aggregator:{} alive {} suspected {} failed {} total {}", new Object[]{selfAddress.getId(), aggregatorAddress,alive,suspected, failed, members.size()});
+        	trigger(new NetStatus(selfAddress, aggregatorAddress, new Status(receivedPings,alive,suspected,failed,rtt.clusterSmoothedRtt(),rtt.clusterRttVariance())), network);
         }
 
     };
@@ -291,23 +369,48 @@ public class SwimComp extends ComponentDefinition {
 		@Override
 		public void handle(AckTimeout event) {
 			// TODO Auto-generated method stub
-			NatedAddress noReplyNode = ackids.get(event.getTimeoutId());
-			log.info("{} timeout -Node {} SUSPECTED! UUID: {} Will try indirect-ping!", new Object[]{selfAddress.getId(), noReplyNode,event.getTimeoutId()});
+			Probe probe = probes.get(event.getSeq());
+			if (probe == null) {
+				//the ack arrived while the timeout was on its way
+				return;
+			}
+			NatedAddress noReplyNode = probe.getTarget();
+			if (probe.isRelayed()) {
+				//we only relayed this probe, tell the requester that the target did not answer
+				log.info("{} indirect ping to {} timed out, nack to {}", new Object[]{selfAddress.getId(), noReplyNode, probe.getRequester()});
+				cancelWaitingAck(event.getSeq());
+				trigger(new NetNack(selfAddress, probe.getRequester(), new Nack(probe.getRequesterSeq(), preparePiggyBackList())), network);
+				return;
+			}
+			log.info("{} timeout -Node {} SUSPECTED! seq: {} Will try indirect-ping!", new Object[]{selfAddress.getId(), noReplyNode,event.getSeq()});
 			//implement indirect probing
-			cancelWaitingAck(event.getTimeoutId());
+			cancelWaitingAck(event.getSeq());
+			//nobody answered our probe, maybe we are the slow one
+			health.raise(1);
 			//if it is already suspected then there is no need for an extra indirect ping
-			if (aliveNodes.containsKey(noReplyNode.getId())){
-				PiggyBackElement e = aliveNodes.get(noReplyNode.getId());
-				aliveNodes.remove(noReplyNode.getId());
-				e.setStatus(NodeStatus.SUSPECTED);
-				e.initDiseminateTimes();
-				suspectedNodes.put(noReplyNode.getId(), e);
+			int slot = members.indexOf(noReplyNode.getId());
+			if (slot != -1 && isAlive(slot)){
+				members.setStatusAt(slot, NodeStatus.SUSPECTED);
+				members.setSuspectorAt(slot, selfAddress.getId());
+				disseminate(noReplyNode.getId());
+				statusChanged(slot);
 				//select k members at random
-				preparePiggyBackList();
+				//one immutable snapshot is shared by all k ping-reqs
+				PiggybackBatch piggybacked = preparePiggyBackList();
+				int suspicionId = scheduleWaitingSuspected(noReplyNode, members.incarnationAt(slot));
+				Suspicion suspicion = suspectids.get(suspicionId);
+				int[] excluded = new int[k+1];
+				excluded[0] = noReplyNode.getId();
 				for (int i=0; i<k; i++){
-					PiggyBackElement value = selectRoundRobinNode(noReplyNode);
-					//send ping-req message to peers
-					trigger(new NetPingReq(selfAddress, value.getAddress(), new PingReq(scheduleWaitingSuspected(noReplyNode),piggybacked,noReplyNode)), network);
+					int id = probeList.random(excluded, i+1);
+					if (id == -1){
+						break;
+					}
+					excluded[i+1] = id;
+					NatedAddress value = members.addressAt(members.indexOf(id));
+					suspicion.addRelay(id);
+					//send ping-req message to peers, all of them answer to the same suspicion
+					trigger(new NetPingReq(selfAddress, value, new PingReq(suspicionId,piggybacked,noReplyNode)), network);
 				}
 				//totally new timeout
 			}
@@ -333,10 +436,11 @@ public class SwimComp extends ComponentDefinition {
 				mergeViews(event.getContent().getNodes());
 			}
 			log.info("{} indirect pings node {}, as requested by node {}",new Object[]{selfAddress.getId(),event.getContent().getNodeToBePinged(),event.getSource()});
-			preparePiggyBackList();
 			//send indirect ping to node
 			//indirect ping also has a normal timeout;
-			trigger(new NetIndirectPing(selfAddress,event.getContent().getNodeToBePinged(), new IndirectPing(scheduleWaitingAck(event.getContent().getNodeToBePinged()), piggybacked, event.getSource(),event.getContent().getSn())), network);
+			Probe probe = scheduleWaitingAck(event.getContent().getNodeToBePinged());
+			probe.relayFor(event.getSource(), event.getContent().getSn());
+			trigger(new NetIndirectPing(selfAddress,event.getContent().getNodeToBePinged(), new IndirectPing(probe.getSeq(), preparePiggyBackList(), event.getSource(),event.getContent().getSn())), network);
 		}
     	
     };
@@ -354,9 +458,8 @@ public class SwimComp extends ComponentDefinition {
             	//merge lists
             	mergeViews(event.getContent().getNodes());
             }
-            preparePiggyBackList();
             //event content sn is the initial -initial is the current
-             trigger(new NetIndirectPong(selfAddress,source,new IndirectPong(event.getContent().getSn(),piggybacked,event.getContent().getForwardNode(),event.getContent().getInitialUUID())),network);   
+             trigger(new NetIndirectPong(selfAddress,source,new IndirectPong(event.getContent().getSn(),preparePiggyBackList(),event.getContent().getForwardNode(),event.getContent().getInitialSn())),network);   
 		}
     	
     };
@@ -367,7 +470,9 @@ public class SwimComp extends ComponentDefinition {
 		public void handle(NetIndirectPong event) {
 			// TODO Auto-generated method stub
 			IndirectPong content = event.getContent();
-			if (ackids.containsKey(content.getSn())){
+			Probe probe = probes.get(content.getSn());
+			if (probe != null && probe.isRelayed()){
+				sampleRtt(probe);
 				log.info("{} received piggybacked pong {} from {}",
 						new Object[] { selfAddress.getId(),
 						content.toString(),event.getSource().getId() });
@@ -378,8 +483,7 @@ public class SwimComp extends ComponentDefinition {
 				//received indirect pong from alive node
 				cancelWaitingAck(content.getSn());
 				//if received pong, then forward to initial node
-				preparePiggyBackList();
-				trigger(new NetFinalPong(selfAddress,content.getForwardNode(),new FinalPong(event.getContent().getCurrentWaitingId(), piggybacked )),network);
+				trigger(new NetFinalPong(selfAddress,content.getForwardNode(),new FinalPong(event.getContent().getCurrentWaitingId(), preparePiggyBackList())),network);
 		}
 		}
     };
@@ -389,203 +493,248 @@ public class SwimComp extends ComponentDefinition {
 		@Override
 		public void handle(SuspectedTimeout event) {
 			// TODO Auto-generated method stub
-			log.info("{} suspecting timeout - no reply from: {} NODE FAILED!", new Object[]{selfAddress.getId(), suspectids.get(event.getTimeoutId())});
-//			log.info("{} CUSTOM UUID IS: {}", new Object[]{selfAddress.getId(),event.getCustomID()});
-//			for (UUID id: ids.keySet()){
-//				System.out.println(id.toString());
-//			}
-			if (suspectids.containsKey(event.getTimeoutId())){
-				Integer addressId = suspectids.get(event.getTimeoutId()).getId();
-//			if (aliveNodes.containsKey(addressId)){
-//				PiggyBackElement element = (PiggyBackElement) aliveNodes.get(addressId);
-//				element.initDiseminateTimes();
-//				element.setStatus(NodeStatus.FAILED);
-//				aliveNodes.remove(addressId);
-//				failedNodes.put(addressId, element);
-//			}
-			if (suspectedNodes.containsKey(addressId)){
-				PiggyBackElement element = (PiggyBackElement) suspectedNodes.get(addressId);
-				element.initDiseminateTimes();
-				element.setStatus(NodeStatus.FAILED);
-				suspectedNodes.remove(addressId);
-				failedNodes.put(addressId, element);
+			Suspicion suspicion = suspectids.get(event.getSuspicionId());
+			if (suspicion == null || !event.getTimeoutId().equals(suspectTimers.get(event.getSuspicionId()))){
+				//already resolved or rescheduled
+				return;
 			}
+			log.info("{} suspecting timeout - no reply from: {} NODE FAILED!", new Object[]{selfAddress.getId(), suspicion.getTarget()});
+			//relays that did not even nack point at our own slowness
+			health.raise(suspicion.missedNacks());
+			int addressId = suspicion.getTarget();
+			int slot = members.indexOf(addressId);
+			if (slot != -1 && members.statusAt(slot) == NodeStatus.SUSPECTED){
+				members.setStatusAt(slot, NodeStatus.FAILED);
+				disseminate(addressId);
+				statusChanged(slot);
 			}
 			//ids.remove(event.getCustomID());
-			cancelSuspected(event.getTimeoutId());
+			cancelSuspected(event.getSuspicionId());
 			//scheduleWaitingFailed(event.getCustomID());
 		}
 		
     };
     
-    private void preparePiggyBackList(){
-    	piggybacked.clear();
-        piggybacked.putAll(aliveNodes);
-        piggybacked.putAll(failedNodes);
-        piggybacked.putAll(suspectedNodes);
-        Iterator<Map.Entry<Integer, PiggyBackElement>> entries = piggybacked.entrySet().iterator();
-        while (entries.hasNext()) {
-            Map.Entry<Integer, PiggyBackElement> entry = entries.next();
-            //new node changes status, after enough dissemination
-            if (entry.getValue().getDiseminateTimes()<0 && entry.getValue().getStatus()==NodeStatus.NEW){
-            	entry.getValue().setStatus(NodeStatus.ALIVE);
-            	entry.getValue().initDiseminateTimes();
-            }
-            if (entry.getValue().getDiseminateTimes()<0){
-            	//don t disseminate if it has been disseminated enough
-            	entries.remove();
-            }else {
-            	//otherwise disseminate
-            	entry.getValue().dicreaseDisseminateTimes();
-            	entry.getValue().incrementCounter();
-            }
-        }
+    private PiggybackBatch preparePiggyBackList(){
+    	//only the changes still waiting for dissemination, not the whole membership
+    	return disseminationBuffer.select(routes.select(routesPerMessage));
+    }
+    
+    private void disseminate(int id){
+    	int slot = members.indexOf(id);
+    	members.setDisseminateTimesAt(slot, disseminationBuffer.retransmitLimit());
+    	disseminationBuffer.add(id);
+    	//failed nodes are not probed anymore
+    	if (members.statusAt(slot) == NodeStatus.FAILED || id == selfAddress.getId()){
+    		probeList.remove(id);
+    	} else {
+    		probeList.add(id);
+    	}
+    }
+    
+    //the nat traversal swaps a suspected relay at once. Only called where a
+    //member turns suspected or failed, not on every re-dissemination
+    private void statusChanged(int slot){
+    	trigger(new MembershipChange(members.addressAt(slot), members.statusAt(slot)), membership);
+    }
+    
+    //new nodes count as alive
+    private boolean isAlive(int slot){
+    	NodeStatus status = members.statusAt(slot);
+    	return status == NodeStatus.ALIVE || status == NodeStatus.NEW;
+    }
+    
+    private int aliveCount(){
+    	return members.count(NodeStatus.ALIVE) + members.count(NodeStatus.NEW);
     }
     
-    private void mergeViews(Map<Integer,PiggyBackElement> view){
-		Iterator<Map.Entry<Integer, PiggyBackElement>> entries = view.entrySet().iterator();
-		while (entries.hasNext()) {
-			Map.Entry<Integer, PiggyBackElement> entry = entries.next();
-			Integer key = entry.getKey();
-			PiggyBackElement value = entry.getValue();
-			if (value.getAddress().equals(selfAddress)) {
+    private void mergeViews(PiggybackBatch view){
+		//routes first, so the addresses below are patched with the newest parents
+		for (int i = 0; i < view.routeCount(); i++) {
+			mergeRoute(view.getRoute(i));
+		}
+		for (int i = 0; i < view.size(); i++) {
+			int key = view.getId(i);
+			NatedAddress address = routed(addresses.intern(view.getAddress(i)));
+			NodeStatus status = view.getStatus(i);
+			int incarnation = view.getIncarnation(i);
+			int slot = members.indexOf(key);
+			if (key == selfAddress.getId()) {
 				// myself is suspected? Say no
-				// implement later
-				if (value.getStatus()== NodeStatus.SUSPECTED||value.getStatus()==NodeStatus.FAILED){
-					value.initDiseminateTimes();
-						aliveNodes.put(selfAddress.getId(), new PiggyBackElement(selfAddress, NodeStatus.ALIVE, value.getCount()));
+				if (status == NodeStatus.SUSPECTED || status == NodeStatus.FAILED){
+					refute(incarnation);
 				}
-				//continue;
-			}else if (value.getStatus()==NodeStatus.NEW){
-				//if (!aliveNodes.containsKey(key)){
-					value.initDiseminateTimes();
-					//value.setStatus(NodeStatus.ALIVE);
-//					if (!bootstrapNodes.contains(value.getAddress())){
-//						bootstrapNodes.add(value.getAddress());						
-//					}
-					failedNodes.remove(key);
-					suspectedNodes.remove(key);
-					aliveNodes.put(key, value);
-			}
-			else if ((value.getStatus() == NodeStatus.ALIVE)) {
-				if (aliveNodes.containsKey(key)) {
-					if (hasBiggerCount(value)) {
-						//failedNodes.remove(key);
-						//suspectedNodes.remove(key);
-						aliveNodes.get(key).setCount(value.getCount());
-					}
-				}else if (suspectedNodes.containsKey(key)) {
-					// see page 7
-					// Such an Alive
-					// message un-marks the suspected member ✡☞✌ in
-					// membership
-					// lists of recipient members
-					if (hasBiggerCountSuspected(value)) {
-						value.initDiseminateTimes();
-						suspectedNodes.remove(key);
-						//failedNodes.remove(key);
-						aliveNodes.put(key, value);
+			} else if (status == NodeStatus.NEW) {
+				// a (re)joining node starts over, it overrides failed with any incarnation
+				if (slot == -1 || members.statusAt(slot) == NodeStatus.FAILED) {
+					//a rejoined node versions its routes from scratch
+					if (slot != -1) {
+						routes.remove(key);
 					}
-				} else if (failedNodes.containsKey(key)) {
-					//alive does not override failed
+					members.put(address, NodeStatus.NEW, incarnation);
+					disseminate(key);
 				} else {
+					mergeAlive(slot, address, incarnation);
+				}
+			} else if (status == NodeStatus.ALIVE) {
+				if (slot == -1) {
 					// totally new node
-					// neighbors.add(value.getAddress());
-					value.initDiseminateTimes();
-					aliveNodes.put(key, value);
+					members.put(address, NodeStatus.ALIVE, incarnation);
+					disseminate(key);
+				} else {
+					mergeAlive(slot, address, incarnation);
 				}
-				// add to neigbors if it is not already there
-			} else if (value.getStatus() == NodeStatus.FAILED) {
-				// failed messages overrides alive and suspected,with any j
-				if (aliveNodes.containsKey(key)) {
-					aliveNodes.remove(key);
-					value.initDiseminateTimes();
-					failedNodes.put(key, value);
-				}  else if (suspectedNodes.containsKey(key)) {
-					suspectedNodes.remove(key);
-					value.initDiseminateTimes();
-					failedNodes.put(key, value);
+			} else if (status == NodeStatus.FAILED) {
+				// failed overrides alive and suspected of the same or an older
+				// incarnation - a stale failure must not bury a refutation
+				if (members.overrides(slot, NodeStatus.FAILED, incarnation)) {
+					slot = members.put(address, NodeStatus.FAILED, incarnation);
+					disseminate(key);
+					statusChanged(slot);
 				}
-			} else if (value.getStatus() == NodeStatus.SUSPECTED) {
+			} else if (status == NodeStatus.SUSPECTED) {
 				// see beginning of page 7 in swim paper, anynode
 				// receiving such message
 				// also marks mj as suspected
-				if (aliveNodes.containsKey(key)) {
-					if (hasBiggerOrEqualCount(value)){
-						value.setStatus(NodeStatus.SUSPECTED);
-						value.initDiseminateTimes();
-						value.setCount(value.getCount());
-						
-						//scheduleWaitingSuspected();
-						//ids.put(suspectTimeoutId, value.getAddress());
-						//failedNodes.remove(key);
-						aliveNodes.remove(key);
-						suspectedNodes.put(key, value);
-					}
-					
-				}else if (suspectedNodes.containsKey(key)){
-					if (hasBiggerCountSuspected(value)){
-						//value.setStatus(NodeStatus.SUSPECTED);
-						value.initDiseminateTimes();
-						value.setCount(value.getCount());
-						failedNodes.remove(key);
-						suspectedNodes.put(key, value);
+				if (slot != -1 && members.overrides(slot, NodeStatus.SUSPECTED, incarnation)) {
+					if (isAlive(slot)) {
+						members.put(address, NodeStatus.SUSPECTED, incarnation);
+						members.setSuspectorAt(slot, view.getSuspector(i));
+						disseminate(key);
+						statusChanged(slot);
+					} else {
+						members.setIncarnationAt(slot, incarnation);
+						members.setSuspectorAt(slot, view.getSuspector(i));
+						disseminate(key);
 					}
 				}
+				if (slot != -1 && members.statusAt(slot) == NodeStatus.SUSPECTED) {
+					confirmSuspicion(key, incarnation, view.getSuspector(i));
+				}
 			}
 		}
     	
     }
     
-    private void checkSource(NatedAddress source){
-    	//if we receive a message from a node, it means it is alive
-    	//so we check if it is consistent with our data
-    	//log.info(" {} contains....alive??? {}  {}", new Object[]{selfAddress.getId(), source.getId(),aliveNodes.toString()});
-    	if (aliveNodes.containsKey(source.getId())){
-    		//information is consistent
-    		//log.info(" {} contains....alive {} ", new Object[]{selfAddress.getId(), source.getId()});
-    		//failedNodes.remove(source.getId());
-    		//suspectedNodes.remove(source.getId());
+    //a newer route replaces the parents of the member, whatever its incarnation
+    private void mergeRoute(RelayRoute route){
+    	if (route.getId() == selfAddress.getId()) {
+    		//we own our route, nobody has a newer one
     		return;
-    	} 
-    	else if (suspectedNodes.containsKey(source.getId())){
-    		PiggyBackElement e = suspectedNodes.get(source.getId());
-    		e.setStatus(NodeStatus.ALIVE);
-    		e.initDiseminateTimes();
-    		//log.info("{} unsuspects node {} in source-checking",new Object[]{selfAddress.getId(),source.getId()});
-    		suspectedNodes.remove(source.getId());
-    		e.incrementCounter();
-    		aliveNodes.put(source.getId(), e);
-    		return;
-    	}else if (failedNodes.containsKey(source.getId())){
-    		PiggyBackElement e = failedNodes.get(source.getId());
-    		e.setStatus(NodeStatus.ALIVE);
-    		e.initDiseminateTimes();
-    		//log.info("{} unfailed node {} in source-checking",new Object[]{selfAddress.getId(),source.getId()});
-    		e.incrementCounter();
-    		failedNodes.remove(source.getId());
-    		//suspectedNodes.remove(source.getId());
-    		aliveNodes.put(source.getId(), e);
+    	}
+    	if (!routes.update(route, disseminationBuffer.retransmitLimit())) {
     		return;
-    	}else {
-    		log.info(" {} new node!....{} ", new Object[]{selfAddress.getId(), source.getId()});
-    		if (!aliveNodes.containsKey(source.getId())){
-    			//neighbors.add(source);    			
-    			log.info("{} adds new node {} in source-checking",new Object[]{selfAddress.getId(),source.getId()});
-    			aliveNodes.put(source.getId(), new PiggyBackElement(source, NodeStatus.NEW));
+    	}
+    	int slot = members.indexOf(route.getId());
+    	if (slot != -1) {
+    		members.setAddressAt(slot, routed(members.addressAt(slot)));
+    	}
+    }
+    
+    //the address with the parents of the newest known route, the parents are
+    //resolved through the membership, parents we don't know are left out
+    private NatedAddress routed(NatedAddress address){
+    	RelayRoute route = routes.get(address.getId());
+    	if (address.isOpen() || route == null || hasRoute(address, route)) {
+    		return address;
+    	}
+    	Set<NatedAddress> parents = new HashSet<NatedAddress>();
+    	for (int i = 0; i < route.parentCount(); i++) {
+    		int slot = members.indexOf(route.getParent(i));
+    		if (slot != -1 && members.addressAt(slot).isOpen()) {
+    			parents.add(members.addressAt(slot));
+    		}
+    	}
+    	if (parents.isEmpty()) {
+    		return address;
+    	}
+    	return addresses.intern(new BasicNatedAddress(new BasicAddress(address.getIp(), address.getPort(), address.getId()), address.getNatType(), parents));
+    }
+    
+    private static boolean hasRoute(NatedAddress address, RelayRoute route){
+    	if (address.getParents().size() != route.parentCount()) {
+    		return false;
+    	}
+    	for (NatedAddress parent : address.getParents()) {
+    		if (!route.hasParent(parent.getId())) {
+    			return false;
     		}
-//        		if (!bootstrapNodes.contains(source)){
-//        			bootstrapNodes.add(source);    			
-//        			//log.info("{} adds new node {} in source-checking",new Object[]{selfAddress.getId(),source.getId()});
-//        			//aliveNodes.put(source.getId(), new PiggyBackElement(source, NodeStatus.NEW));
-//        		}
-        		if (bootstrapNodes.size()==1){
-        			schedulePeriodicPing();
-        		}
     	}
+    	return true;
+    }
+    
+    //Alive(i) overrides Alive(j) and Suspect(j) for i > j. Only the member raises
+    //its own incarnation, so a bigger one also means a failed member came back
+    private void mergeAlive(int slot, NatedAddress address, int incarnation){
+    	if (!members.overrides(slot, NodeStatus.ALIVE, incarnation)) {
+    		return;
+    	}
+    	// see page 7
+    	// Such an Alive
+    	// message un-marks the suspected member in
+    	// membership
+    	// lists of recipient members
+    	NodeStatus status = isAlive(slot) ? members.statusAt(slot) : NodeStatus.ALIVE;
+    	members.put(address, status, incarnation);
+    	disseminate(address.getId());
+    }
+    
+    //we are suspected or declared failed with the given incarnation, the only
+    //place where our own incarnation is raised
+    private void refute(int incarnation){
+    	int slot = members.indexOf(selfAddress.getId());
+    	int current = members.incarnationAt(slot);
+    	if (incarnation < current) {
+    		//stale, we already refuted it - gossip the refutation again for
+    		//the members still holding the old state
+    		disseminate(selfAddress.getId());
+    		return;
+    	}
+    	log.info("{} refutes suspicion with incarnation {}", new Object[]{selfAddress.getId(), incarnation + 1});
+    	//others had to suspect us, we may be the slow one
+    	health.raise(1);
+    	members.put(selfAddress, NodeStatus.ALIVE, incarnation + 1);
+    	disseminate(selfAddress.getId());
+    }
+    
+    //another member raised a suspicion we are also running - count it as an
+    //independent confirmation, which shortens our suspicion timeout. The
+    //suspector, not the gossip sender, is counted, so relays and echoes of our
+    //own suspicion do not shorten it
+    private void confirmSuspicion(int target, int incarnation, int suspector){
+    	Integer suspicionId = suspicions.get(target);
+    	if (suspicionId == null) {
+    		return;
+    	}
+    	Suspicion suspicion = suspectids.get(suspicionId);
+    	if (incarnation < suspicion.getIncarnation() || !suspicion.confirm(suspector)) {
+    		return;
+    	}
+    	CancelTimeout cpt = new CancelTimeout(suspectTimers.get(suspicionId));
+    	trigger(cpt, timer);
+    	scheduleSuspectedTimer(suspicionId, suspicion.remaining(System.currentTimeMillis()));
+    }
+    
+    private void checkSource(NatedAddress source){
+    	//if we receive a message from a node, it means it is alive
+    	//so we check if it is consistent with our data
+    	int slot = members.indexOf(source.getId());
+    	if (slot == -1) {
     		//we have an unknown, totally new node!
-    	
-    	
+    		log.info("{} adds new node {} in source-checking",new Object[]{selfAddress.getId(),source.getId()});
+    		members.put(addresses.intern(source), NodeStatus.NEW, 0);
+    		disseminate(source.getId());
+    		if (bootstrapNodes.size()==1){
+    			schedulePeriodicPing();
+    		}
+    	} else if (members.statusAt(slot) == NodeStatus.SUSPECTED) {
+    		//it talks to us, so we stop suspecting it locally. Only the node
+    		//can raise its incarnation, the rest of the group learns from its refutation
+    		members.setStatusAt(slot, NodeStatus.ALIVE);
+    	} else if (members.statusAt(slot) == NodeStatus.FAILED) {
+    		//gossip its failure again, so it hears about it in our replies and refutes
+    		disseminate(source.getId());
+    	}
     }
     
     private Handler<NetNatRequest> handleNetNatRequest = new Handler<NetNatRequest>(){
@@ -596,11 +745,10 @@ public class SwimComp extends ComponentDefinition {
 			log.info("{} received request from nated node for new relays {}", new Object[]{selfAddress.getId(),event.getParents()});
 			Set<NatedAddress> temp = new HashSet<NatedAddress>();
 			for (NatedAddress ad: event.getParents()){
-				if (aliveNodes.containsKey(ad.getId())&&(aliveNodes.get(ad.getId()).getAddress().isOpen())){
-					PiggyBackElement nodeAddress = aliveNodes.get(ad.getId());
-					nodeAddress.setAddress(ad);
-					aliveNodes.put(ad.getId(), nodeAddress);
-					temp.add(nodeAddress.getAddress());
+				int slot = members.indexOf(ad.getId());
+				if (slot != -1 && isAlive(slot) && members.addressAt(slot).isOpen()){
+					members.setAddressAt(slot, addresses.intern(ad));
+					temp.add(ad);
 				}
 			}
 			trigger(new NetNatResponse(temp), nat);
@@ -614,114 +762,108 @@ public class SwimComp extends ComponentDefinition {
 		public void handle(NetNatUpdate event) {
 			// TODO Auto-generated method stub
 			log.info("{} received update from nated node for new relay address {}", new Object[]{selfAddress.getId(),event.getSelfAddress()});
-			if (aliveNodes.containsKey(selfAddress.getId())&& selfAddress.isOpen()){
-				
-				PiggyBackElement element = aliveNodes.get(selfAddress.getId());
-				element.setAddress(event.getSelfAddress());
-				element.initDiseminateTimes();
-				element.incrementCounter();
-				selfAddress = event.getSelfAddress();
+			int slot = members.indexOf(selfAddress.getId());
+			//only nated nodes change parents
+			if (slot != -1 && isAlive(slot) && !selfAddress.isOpen()){
+				//gossip the new parents as a route with a higher version, which wins
+				//over the old parents in everybody's view without an incarnation change,
+				//versions start over at every incarnation
+				NatedAddress newAddress = addresses.intern(event.getSelfAddress());
+				members.setAddressAt(slot, newAddress);
+				selfAddress = newAddress;
+				int[] parents = new int[newAddress.getParents().size()];
+				int i = 0;
+				for (NatedAddress parent : newAddress.getParents()) {
+					parents[i++] = parent.getId();
+				}
+				int incarnation = members.incarnationAt(slot);
+				RelayRoute current = routes.get(selfAddress.getId());
+				int version = current != null && current.getIncarnation() == incarnation ? current.getVersion() + 1 : 0;
+				RelayRoute route = new RelayRoute(selfAddress.getId(), incarnation, version, parents);
+				routes.update(route, disseminationBuffer.retransmitLimit());
+				log.info("{} gossips new relay route {}", new Object[]{selfAddress.getId(), route});
 				bootstrapNodes.add(selfAddress);
-				aliveNodes.put(event.getSelfAddress().getId(),element);
 			}
 		}
     	
     };
     
-    private boolean hasBiggerCount(PiggyBackElement e){
-    	if (e.getCount() > aliveNodes.get(e.getAddress().getId()).getCount()){
-    		return true;
-    	}
-    	return false;
-    	
-    }
-    
-    private boolean hasBiggerOrEqualCount(PiggyBackElement e){
-    	if (e.getCount() >= aliveNodes.get(e.getAddress().getId()).getCount()){
-    		return true;
-    	}
-    	return false;
-    	
-    }
-    
-    private Boolean hasBiggerCountSuspected(PiggyBackElement e){
-    	if (e.getCount() > suspectedNodes.get(e.getAddress().getId()).getCount()){
-    		return true;
+    private NatedAddress selectRoundRobinNode(){
+    	int id = probeList.next();
+    	if (id == -1){
+    		return null;
     	}
-    	return false;
-    	
-    }   
-    
-    private PiggyBackElement selectRoundRobinNode(NatedAddress noReplyNode){
-		Map<Integer, PiggyBackElement> tempMap = new HashMap<Integer, PiggyBackElement>();
-		tempMap.putAll(aliveNodes);
-		tempMap.putAll(suspectedNodes);
-		if (noReplyNode != null) {
-			tempMap.remove(noReplyNode.getId());
-		}
-//		for (NatedAddress address :ackids.values()){
-//			tempMap.remove(address.getId());
-//		}
-		tempMap.remove(selfAddress.getId());
-		List<Integer> keys = new ArrayList<Integer>(tempMap.keySet());
-		PiggyBackElement value=null;
-		if (keys.size()>0){
-		if (robin < tempMap.size()) {
-			Integer key = keys.get(robin);
-			value = tempMap.get(key);
-			robin++;
-		} else {
-			robin = 0;
-			Integer key = keys.get(robin);
-			value = tempMap.get(key);
-		}
-		}
-		return value;
+    	return members.addressAt(members.indexOf(id));
     }
 
+    //one probe round, rescheduled by every round so it follows the local health
     private void schedulePeriodicPing() {
-        SchedulePeriodicTimeout spt = new SchedulePeriodicTimeout(1000, 1000);
-        PingTimeout sc = new PingTimeout(spt);
-        spt.setTimeoutEvent(sc);
+        if (pingTimeoutId != null) {
+            return;
+        }
+        ScheduleTimeout st = new ScheduleTimeout(health.scale(1000));
+        PingTimeout sc = new PingTimeout(st);
+        st.setTimeoutEvent(sc);
         pingTimeoutId = sc.getTimeoutId();
-        trigger(spt, timer);
+        trigger(st, timer);
+    }
+    
+    private void sampleRtt(Probe probe) {
+    	rtt.sample(probe.getTarget().getId(), System.currentTimeMillis() - probe.getSentAt());
     }
     
-    private UUID scheduleWaitingAck(NatedAddress address) {
-        ScheduleTimeout st = new ScheduleTimeout(2000);
-        AckTimeout sc = new AckTimeout(st);
+    private Probe scheduleWaitingAck(NatedAddress address) {
+        Probe probe = probes.start(address, System.currentTimeMillis());
+        ScheduleTimeout st = new ScheduleTimeout(health.scale(rtt.timeout(address.getId())));
+        AckTimeout sc = new AckTimeout(st, probe.getSeq());
         st.setTimeoutEvent(sc);
-        ackTimeoutId = sc.getTimeoutId();
-	    ackids.put(ackTimeoutId,address);
+        probe.setTimeoutId(sc.getTimeoutId());
         trigger(st, timer);
-        return ackTimeoutId;
-        //return ackTimeoutId;
+        return probe;
     }
     
-    //timeout for a node to be considered from alive to suspected
-    private UUID scheduleWaitingSuspected(NatedAddress suspected) {
+    //timeout for a node to be considered from suspected to failed
+    private int scheduleWaitingSuspected(NatedAddress suspected, int incarnation) {
+    	Integer old = suspicions.get(suspected.getId());
+    	if (old != null) {
+    		cancelSuspected(old);
+    	}
     	//we put bigger delay aas it is 2 RTT
-        ScheduleTimeout st = new ScheduleTimeout(3000);
-        SuspectedTimeout sc = new SuspectedTimeout(st);
-        //sc.setCustomID(id);
-        //log.info("UUID to be set: {} UUID setted: {}", new Object[]{id,sc.getCustomID()});
+    	long min = health.scale(3000);
+    	Suspicion suspicion = new Suspicion(suspected.getId(), selfAddress.getId(), incarnation, System.currentTimeMillis(), min, min * suspicionMaxMultiplier, k);
+    	int suspicionId = probes.nextSeq();
+    	suspectids.put(suspicionId, suspicion);
+    	suspicions.put(suspected.getId(), suspicionId);
+    	scheduleSuspectedTimer(suspicionId, suspicion.timeout());
+        return suspicionId;
+    }
+    
+    private void scheduleSuspectedTimer(int suspicionId, long delay) {
+        ScheduleTimeout st = new ScheduleTimeout(delay);
+        SuspectedTimeout sc = new SuspectedTimeout(st, suspicionId);
         st.setTimeoutEvent(sc);
-        suspectids.put(sc.getTimeoutId(), suspected);
+        suspectTimers.put(suspicionId, sc.getTimeoutId());
         trigger(st, timer);
-        return sc.getTimeoutId();
-        //return ackTimeoutId;
     }
     
-    private void cancelWaitingAck(UUID id) {
-        CancelTimeout cpt = new CancelTimeout(id);
-        ackids.remove(id);
-        trigger(cpt, timer);
+    private void cancelWaitingAck(int seq) {
+        Probe probe = probes.remove(seq);
+        if (probe != null) {
+            CancelTimeout cpt = new CancelTimeout(probe.getTimeoutId());
+            trigger(cpt, timer);
+        }
     }
     
-    private void cancelSuspected(UUID id){
-    	CancelTimeout cpt = new CancelTimeout(id);
-        suspectids.remove(id);
-        trigger(cpt, timer);
+    private void cancelSuspected(int id){
+    	Suspicion suspicion = suspectids.remove(id);
+    	if (suspicion != null) {
+    		suspicions.remove(suspicion.getTarget());
+    	}
+    	UUID timeoutId = suspectTimers.remove(id);
+    	if (timeoutId != null) {
+    		CancelTimeout cpt = new CancelTimeout(timeoutId);
+    		trigger(cpt, timer);
+    	}
     }
     
 
@@ -755,11 +897,15 @@ public class SwimComp extends ComponentDefinition {
         private final NatedAddress selfAddress;
         private final Set<NatedAddress> bootstrapNodes;
         private final NatedAddress aggregatorAddress;
+        private final SwimConfig swimConfig;
+        private final long seed;
 
-        public SwimInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress) {
+        public SwimInit(NatedAddress selfAddress, Set<NatedAddress> bootstrapNodes, NatedAddress aggregatorAddress, SwimConfig swimConfig, long seed) {
             this.selfAddress = selfAddress;
             this.bootstrapNodes = bootstrapNodes;
             this.aggregatorAddress = aggregatorAddress;
+            this.swimConfig = swimConfig;
+            this.seed = seed;
         }
 
 		public NatedAddress getSelfAddress() {
@@ -773,6 +919,14 @@ public class SwimComp extends ComponentDefinition {
 		public NatedAddress getAggregatorAddress() {
 			return aggregatorAddress;
 		}
+
+		public SwimConfig getSwimConfig() {
+			return swimConfig;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
     }
 
     private static class StatusTimeout extends Timeout {
@@ -784,16 +938,22 @@ public class SwimComp extends ComponentDefinition {
 
     private static class PingTimeout extends Timeout {
 
-        public PingTimeout(SchedulePeriodicTimeout request) {
+        public PingTimeout(ScheduleTimeout request) {
             super(request);
         }
     }
     
     private static class AckTimeout extends Timeout{
 
-		protected AckTimeout(ScheduleTimeout request) {
+    	private final int seq;
+
+		protected AckTimeout(ScheduleTimeout request, int seq) {
 			super(request);
-			// TODO Auto-generated constructor stub
+			this.seq = seq;
+		}
+
+		public int getSeq() {
+			return seq;
 		}
     
     }
@@ -801,9 +961,15 @@ public class SwimComp extends ComponentDefinition {
     
     private static class SuspectedTimeout extends Timeout {
     	
+    	private final int suspicionId;
 
-		public SuspectedTimeout(ScheduleTimeout request) {
+		public SuspectedTimeout(ScheduleTimeout request, int suspicionId) {
 			super(request);
+			this.suspicionId = suspicionId;
+		}
+
+		public int getSuspicionId() {
+			return suspicionId;
 		}
 
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim;
+
+/**
+ * Tunables of the SWIM failure detector.
+ */
+public class SwimConfig {
+
+    public static final int DEFAULT_DISSEMINATION_MULTIPLIER = 4;
+
+    //maximum number of membership updates piggybacked on a single message
+    public final int piggybackSize;
+    //lambda - every update is piggybacked lambda * log(N) times, N the live members
+    public final int disseminationMultiplier;
+    //lifeguard - highest local health score, probe interval and timeouts are
+    //stretched up to localHealthMax + 1 times, 0 keeps them fixed
+    public final int localHealthMax;
+    //lifeguard - an unconfirmed suspicion lasts this many times the base
+    //suspicion timeout and shrinks to it with confirmations, 1 keeps it fixed
+    public final int suspicionMaxMultiplier;
+
+    public SwimConfig(int piggybackSize, int disseminationMultiplier, int localHealthMax, int suspicionMaxMultiplier) {
+        this.piggybackSize = piggybackSize;
+        this.disseminationMultiplier = disseminationMultiplier;
+        this.localHealthMax = localHealthMax;
+        this.suspicionMaxMultiplier = suspicionMaxMultiplier;
+    }
+
+    public SwimConfig(int piggybackSize, int disseminationMultiplier) {
+        this(piggybackSize, disseminationMultiplier, 0, 1);
+    }
+
+    public SwimConfig(int piggybackSize) {
+        this(piggybackSize, DEFAULT_DISSEMINATION_MULTIPLIER);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.kth.swim.internal.TimerWheel;
+import se.sics.kompics.ComponentDefinition;
+import se.sics.kompics.Handler;
+import se.sics.kompics.Init;
+import se.sics.kompics.Negative;
+import se.sics.kompics.Positive;
+import se.sics.kompics.Stop;
+import se.sics.kompics.timer.CancelPeriodicTimeout;
+import se.sics.kompics.timer.CancelTimeout;
+import se.sics.kompics.timer.SchedulePeriodicTimeout;
+import se.sics.kompics.timer.ScheduleTimeout;
+import se.sics.kompics.timer.Timeout;
+import se.sics.kompics.timer.Timer;
+
+/**
+ * Timer service of a host. The components of the host schedule and cancel
+ * their timeouts here, on a {@link TimerWheel}, and the real timer only holds
+ * one wake-up per host, for the earliest pending deadline - instead of a
+ * schedule and usually a cancel for every probe, ping-req and nat heartbeat.
+ * An idle host has no timer traffic at all. Deadlines are rounded up to the
+ * next tick, so timeouts may fire up to one tick late but never early.
+ */
+public class TimerWheelComp extends ComponentDefinition {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheelComp.class);
+    private Negative<Timer> local = provides(Timer.class);
+    private Positive<Timer> timer = requires(Timer.class);
+
+    private final TimerWheel<Pending> wheel;
+    private final Map<UUID, Integer> handles;
+    private final List<Pending> expired;
+    //the wake-up armed on the real timer and the time it is due
+    private UUID wakeUpId;
+    private long wakeUpAt;
+
+    public TimerWheelComp(TimerWheelInit init) {
+        this.wheel = new TimerWheel<Pending>(init.wheelSize, init.tick);
+        this.handles = new HashMap<UUID, Integer>();
+        this.expired = new ArrayList<Pending>();
+        this.wakeUpId = null;
+        subscribe(handleStop, control);
+        subscribe(handleWakeUp, timer);
+        subscribe(handleScheduleTimeout, local);
+        subscribe(handleSchedulePeriodicTimeout, local);
+        subscribe(handleCancelTimeout, local);
+        subscribe(handleCancelPeriodicTimeout, local);
+    }
+
+    private Handler<Stop> handleStop = new Handler<Stop>() {
+
+        @Override
+        public void handle(Stop event) {
+            if (wakeUpId != null) {
+                trigger(new CancelTimeout(wakeUpId), timer);
+                wakeUpId = null;
+            }
+        }
+
+    };
+
+    private Handler<WakeUp> handleWakeUp = new Handler<WakeUp>() {
+
+        @Override
+        public void handle(WakeUp event) {
+            if (!event.getTimeoutId().equals(wakeUpId)) {
+                //replaced by an earlier wake-up
+                return;
+            }
+            wakeUpId = null;
+            long now = System.currentTimeMillis();
+            wheel.advance(now, expired);
+            for (Pending pending : expired) {
+                UUID id = pending.timeout.getTimeoutId();
+                if (pending.period > 0) {
+                    handles.put(id, wheel.schedule(now, pending.period, pending));
+                } else {
+                    handles.remove(id);
+                }
+                trigger(pending.timeout, local);
+            }
+            expired.clear();
+            arm(wheel.nextDeadline(), now);
+        }
+
+    };
+
+    private Handler<ScheduleTimeout> handleScheduleTimeout = new Handler<ScheduleTimeout>() {
+
+        @Override
+        public void handle(ScheduleTimeout event) {
+            schedule(event.getTimeoutEvent(), event.getDelay(), 0);
+        }
+
+    };
+
+    private Handler<SchedulePeriodicTimeout> handleSchedulePeriodicTimeout = new Handler<SchedulePeriodicTimeout>() {
+
+        @Override
+        public void handle(SchedulePeriodicTimeout event) {
+            schedule(event.getTimeoutEvent(), event.getDelay(), Math.max(1, event.getPeriod()));
+        }
+
+    };
+
+    private Handler<CancelTimeout> handleCancelTimeout = new Handler<CancelTimeout>() {
+
+        @Override
+        public void handle(CancelTimeout event) {
+            cancel(event.getTimeoutId());
+        }
+
+    };
+
+    private Handler<CancelPeriodicTimeout> handleCancelPeriodicTimeout = new Handler<CancelPeriodicTimeout>() {
+
+        @Override
+        public void handle(CancelPeriodicTimeout event) {
+            cancel(event.getTimeoutId());
+        }
+
+    };
+
+    private void schedule(Timeout timeout, long delay, long period) {
+        long now = System.currentTimeMillis();
+        int handle = wheel.schedule(now, delay, new Pending(timeout, period));
+        Integer old = handles.put(timeout.getTimeoutId(), handle);
+        if (old != null) {
+            log.warn("timeout {} scheduled twice", timeout.getTimeoutId());
+            wheel.cancel(old);
+        }
+        arm(wheel.deadline(handle), now);
+    }
+
+    //a cancelled timeout keeps its wake-up, it just finds nothing to expire
+    private void cancel(UUID id) {
+        Integer handle = handles.remove(id);
+        if (handle != null) {
+            wheel.cancel(handle);
+        }
+    }
+
+    //makes sure the real timer wakes us up by the given deadline
+    private void arm(long deadline, long now) {
+        if (deadline < 0 || (wakeUpId != null && wakeUpAt <= deadline)) {
+            return;
+        }
+        if (wakeUpId != null) {
+            trigger(new CancelTimeout(wakeUpId), timer);
+        }
+        ScheduleTimeout st = new ScheduleTimeout(Math.max(0, deadline - now));
+        WakeUp wakeUp = new WakeUp(st);
+        st.setTimeoutEvent(wakeUp);
+        wakeUpId = wakeUp.getTimeoutId();
+        wakeUpAt = deadline;
+        trigger(st, timer);
+    }
+
+    public static class TimerWheelInit extends Init<TimerWheelComp> {
+
+        public final long tick;
+        public final int wheelSize;
+
+        public TimerWheelInit(long tick, int wheelSize) {
+            this.tick = tick;
+            this.wheelSize = wheelSize;
+        }
+    }
+
+    private static class Pending {
+
+        private final Timeout timeout;
+        //in milliseconds, 0 for a one shot timeout
+        private final long period;
+
+        Pending(Timeout timeout, long period) {
+            this.timeout = timeout;
+            this.period = period;
+        }
+    }
+
+    private static class WakeUp extends Timeout {
+
+        public WakeUp(ScheduleTimeout request) {
+            super(request);
+        }
+    }
+}
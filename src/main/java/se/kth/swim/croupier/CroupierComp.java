@@ -21,7 +21,11 @@
 package se.kth.swim.croupier;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
@@ -78,7 +82,8 @@ public class CroupierComp extends ComponentDefinition {
     private CroupierView privateView;
 
     private UUID shuffleCycleId;
-    private UUID shuffleTimeoutId;
+    //shuffle id - timeout of the shuffle, for the shuffles waiting for a response
+    private final Map<UUID, ShuffleTimeout> pendingShuffles;
 
     public CroupierComp(CroupierInit init) {
         this.self = init.self;
@@ -91,7 +96,7 @@ public class CroupierComp extends ComponentDefinition {
 
         this.selfView = null;
         this.shuffleCycleId = null;
-        this.shuffleTimeoutId = null;
+        this.pendingShuffles = new HashMap<UUID, ShuffleTimeout>();
 
         Random rand = new Random(init.seed + overlayId);
         this.publicView = new CroupierView((BasicAddress) self.getBaseAdr(), croupierConfig.viewSize, rand);
@@ -140,6 +145,37 @@ public class CroupierComp extends ComponentDefinition {
         }
         log.info("{} started shuffle", new Object[]{logPrefix});
         schedulePeriodicShuffle();
+        if (croupierConfig.joinShuffleSize > 0) {
+            joinBootstrapNodes();
+        }
+    }
+
+    /**
+     * shuffles with all the bootstrap nodes at once, asking each for a
+     * larger sample, so the views fill within one round trip
+     */
+    private void joinBootstrapNodes() {
+        log.info("{} joining through bootstrap nodes:{}", logPrefix, bootstrapNodes);
+        //a node we are still shuffling with is kept for a later cycle
+        Iterator<NatedAddress> it = bootstrapNodes.iterator();
+        while (it.hasNext()) {
+            NatedAddress peer = it.next();
+            if (peer.getBaseAdr().equals(self.getBaseAdr())) {
+                it.remove();
+            } else if (!isShufflingWith(peer)) {
+                it.remove();
+                shuffle(peer, croupierConfig.joinShuffleSize);
+            }
+        }
+    }
+
+    private boolean isShufflingWith(NatedAddress peer) {
+        for (ShuffleTimeout pending : pendingShuffles.values()) {
+            if (pending.dest.getBaseAdr().equals(peer.getBaseAdr())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void stopShuffle() {
@@ -153,7 +189,8 @@ public class CroupierComp extends ComponentDefinition {
     }
 
     private boolean haveShufflePartners() {
-        return !bootstrapNodes.isEmpty() || !publicView.isEmpty() || !privateView.isEmpty();
+        return !bootstrapNodes.isEmpty() || !publicView.isEmpty() || !privateView.isEmpty()
+                || !pendingShuffles.isEmpty();
     }
 
     Handler<CroupierJoin> handleJoin = new Handler<CroupierJoin>() {
@@ -165,6 +202,8 @@ public class CroupierComp extends ComponentDefinition {
             bootstrapNodes.addAll(join.peers);
             if (!connected()) {
                 startShuffle();
+            } else if (croupierConfig.joinShuffleSize > 0) {
+                joinBootstrapNodes();
             }
         }
     };
@@ -197,15 +236,20 @@ public class CroupierComp extends ComponentDefinition {
         }
     };
 
-    private NatedAddress selectPeerToShuffleWith(double temperature) {
-        if (!bootstrapNodes.isEmpty()) {
-            return bootstrapNodes.remove(0);
+    //bootstrap nodes first, a bootstrap node we are still shuffling with stays
+    //for a later cycle
+    private NatedAddress selectPeerToShuffleWith(double temperature, Set<BasicAddress> excluded) {
+        Iterator<NatedAddress> it = bootstrapNodes.iterator();
+        while (it.hasNext()) {
+            NatedAddress node = it.next();
+            if (!excluded.contains((BasicAddress) node.getBaseAdr())) {
+                it.remove();
+                return node;
+            }
         }
-        NatedAddress node = null;
-        if (!publicView.isEmpty()) {
-            node = publicView.selectPeerToShuffleWith(croupierConfig.policy, true, temperature);
-        } else if (!privateView.isEmpty()) {
-            node = privateView.selectPeerToShuffleWith(croupierConfig.policy, true, temperature);
+        NatedAddress node = publicView.selectPeerToShuffleWith(croupierConfig.policy, temperature > 0, temperature, excluded);
+        if (node == null) {
+            node = privateView.selectPeerToShuffleWith(croupierConfig.policy, temperature > 0, temperature, excluded);
         }
         return node;
     }
@@ -223,43 +267,76 @@ public class CroupierComp extends ComponentDefinition {
             }
 
             if (!publicView.isEmpty() || !privateView.isEmpty()) {
-                CroupierSample cs = new CroupierSample(overlayId, publicView.getAllCopy(), privateView.getAllCopy());
+                CroupierSample cs = new CroupierSample(overlayId, publicView.sample(), privateView.sample());
                 log.info("{} publishing sample \n public nodes:{} \n private nodes:{}", new Object[]{logPrefix, cs.publicSample, cs.privateSample});
                 trigger(cs, croupierPort);
             }
 
-            NatedAddress peer = selectPeerToShuffleWith(croupierConfig.softMaxTemperature);
-            if (peer == null || peer.getBaseAdr().equals(self.getBaseAdr())) {
-                log.error("{} this should not happen - logic error selecting peer", logPrefix);
-                throw new RuntimeException("Error selecting peer");
-            }
-
-            if (!peer.isOpen()) {
-                log.debug("{} did not pick a public node for shuffling - public view size:{}", new Object[]{logPrefix, publicView.getAllCopy().size()});
+            List<NatedAddress> peers = selectPeersToShuffleWith(croupierConfig.softMaxTemperature);
+            if (peers.isEmpty()) {
+                log.debug("{} {} shuffles still in flight - not starting new ones", logPrefix, pendingShuffles.size());
+                return;
             }
 
             // NOTE:
             publicView.incrementDescriptorAges();
             privateView.incrementDescriptorAges();
 
-            Set<CroupierContainer> publicDescCopy = publicView.initiatorCopySet(croupierConfig.shuffleSize, peer);
-            Set<CroupierContainer> privateDescCopy = privateView.initiatorCopySet(croupierConfig.shuffleSize, peer);
-
-            if (self.isOpen()) {
-                publicDescCopy.add(new CroupierContainer(self, selfView));
-            } else {
-                privateDescCopy.add(new CroupierContainer(self, selfView));
+            for (NatedAddress peer : peers) {
+                if (!peer.isOpen()) {
+                    log.debug("{} did not pick a public node for shuffling - public view size:{}", new Object[]{logPrefix, publicView.size()});
+                }
+                shuffle(peer, 0);
             }
-
-            OverlayHeaderImpl<NatedAddress> requestHeader = new OverlayHeaderImpl(new BasicHeader(self, peer, Transport.UDP), overlayId);
-            CroupierShuffle.Request requestContent = new CroupierShuffle.Request(UUID.randomUUID(), publicDescCopy, privateDescCopy);
-            CroupierShuffleNet.Request request = new CroupierShuffleNet.Request(requestHeader, requestContent);
-            log.trace("{} sending:{} to:{}", new Object[]{logPrefix, requestContent, peer});
-            trigger(request, network);
-            scheduleShuffleTimeout(peer);
         }
     };
 
+    private void shuffle(NatedAddress peer, int responseSize) {
+        UUID shuffleId = UUID.randomUUID();
+        Set<CroupierContainer> publicDescCopy = publicView.initiatorCopySet(shuffleId, croupierConfig.shuffleSize, peer);
+        Set<CroupierContainer> privateDescCopy = privateView.initiatorCopySet(shuffleId, croupierConfig.shuffleSize, peer);
+
+        if (self.isOpen()) {
+            publicDescCopy.add(new CroupierContainer(self, selfView));
+        } else {
+            privateDescCopy.add(new CroupierContainer(self, selfView));
+        }
+
+        OverlayHeaderImpl<NatedAddress> requestHeader = new OverlayHeaderImpl(new BasicHeader(self, peer, Transport.UDP), overlayId);
+        CroupierShuffle.Request requestContent = new CroupierShuffle.Request(shuffleId, publicDescCopy, privateDescCopy, responseSize);
+        CroupierShuffleNet.Request request = new CroupierShuffleNet.Request(requestHeader, requestContent);
+        log.trace("{} sending:{} to:{}", new Object[]{logPrefix, requestContent, peer});
+        trigger(request, network);
+        scheduleShuffleTimeout(peer, shuffleId);
+    }
+
+    /**
+     * @return distinct peers to start shuffles with, at most as many as there
+     * are free parallel shuffle slots - peers we are still waiting on are
+     * not candidates, so they are neither picked nor dropped from the view
+     */
+    private List<NatedAddress> selectPeersToShuffleWith(double temperature) {
+        int free = croupierConfig.parallelShuffles - pendingShuffles.size();
+        List<NatedAddress> peers = new ArrayList<NatedAddress>(Math.max(free, 0));
+        Set<BasicAddress> excluded = new HashSet<BasicAddress>();
+        for (ShuffleTimeout pending : pendingShuffles.values()) {
+            excluded.add((BasicAddress) pending.dest.getBaseAdr());
+        }
+        for (int attempt = 0; attempt < free; attempt++) {
+            NatedAddress peer = selectPeerToShuffleWith(temperature, excluded);
+            if (peer == null) {
+                break;
+            }
+            if (peer.getBaseAdr().equals(self.getBaseAdr())) {
+                log.error("{} this should not happen - logic error selecting peer", logPrefix);
+                throw new RuntimeException("Error selecting peer");
+            }
+            peers.add(peer);
+            excluded.add((BasicAddress) peer.getBaseAdr());
+        }
+        return peers;
+    }
+
     Handler handleShuffleRequest = new Handler<CroupierShuffleNet.Request>() {
 
         @Override
@@ -287,8 +364,11 @@ public class CroupierComp extends ComponentDefinition {
             publicView.incrementDescriptorAges();
             privateView.incrementDescriptorAges();
 
-            Set<CroupierContainer> publicDescCopy = publicView.receiverCopySet(croupierConfig.shuffleSize, reqSrc);
-            Set<CroupierContainer> privateDescCopy = privateView.receiverCopySet(croupierConfig.shuffleSize, reqSrc);
+            UUID shuffleId = request.getContent().getId();
+            //a joining node may ask for more than a regular shuffle, up to the whole view
+            int responseSize = Math.max(croupierConfig.shuffleSize, Math.min(request.getContent().responseSize, croupierConfig.viewSize));
+            Set<CroupierContainer> publicDescCopy = publicView.receiverCopySet(shuffleId, responseSize, reqSrc);
+            Set<CroupierContainer> privateDescCopy = privateView.receiverCopySet(shuffleId, responseSize, reqSrc);
             if (self.isOpen()) {
                 publicDescCopy.add(new CroupierContainer(self, selfView));
             } else {
@@ -296,14 +376,14 @@ public class CroupierComp extends ComponentDefinition {
             }
 
             OverlayHeaderImpl<NatedAddress> responseHeader = new OverlayHeaderImpl(new BasicHeader(self, reqSrc, Transport.UDP), overlayId);
-            CroupierShuffle.Response responseContent = new CroupierShuffle.Response(request.getContent().getId(), publicDescCopy, privateDescCopy);
+            CroupierShuffle.Response responseContent = new CroupierShuffle.Response(shuffleId, publicDescCopy, privateDescCopy);
             CroupierShuffleNet.Response response = new CroupierShuffleNet.Response(responseHeader, responseContent);
 
             log.trace("{} sending:{} to:{}", new Object[]{logPrefix, responseContent, reqSrc});
             trigger(response, network);
 
-            publicView.selectToKeep(reqSrc, request.getContent().publicNodes);
-            privateView.selectToKeep(reqSrc, request.getContent().privateNodes);
+            publicView.selectToKeep(shuffleId, reqSrc, request.getContent().publicNodes);
+            privateView.selectToKeep(shuffleId, reqSrc, request.getContent().privateNodes);
             if (!connected() && haveShufflePartners()) {
                 startShuffle();
             }
@@ -326,14 +406,15 @@ public class CroupierComp extends ComponentDefinition {
                     }
                     log.trace("{} received:{} from:{}", new Object[]{logPrefix, response, respSrc});
 
-                    if (shuffleTimeoutId == null) {
-                        log.debug("{} req:{}  already timed out", new Object[]{logPrefix, response.getContent().getId(), respSrc});
+                    UUID shuffleId = response.getContent().getId();
+                    if (!pendingShuffles.containsKey(shuffleId)) {
+                        log.debug("{} req:{}  already timed out", new Object[]{logPrefix, shuffleId, respSrc});
                         return;
                     }
 
-                    publicView.selectToKeep(respSrc, response.getContent().publicNodes);
-                    privateView.selectToKeep(respSrc, response.getContent().privateNodes);
-                    cancelShuffleTimeout();
+                    publicView.selectToKeep(shuffleId, respSrc, response.getContent().publicNodes);
+                    privateView.selectToKeep(shuffleId, respSrc, response.getContent().privateNodes);
+                    cancelShuffleTimeout(shuffleId);
                 }
             };
 
@@ -342,7 +423,11 @@ public class CroupierComp extends ComponentDefinition {
         public void handle(ShuffleTimeout timeout) {
             log.info("{} node:{} timed out", logPrefix, timeout.dest);
 
-            shuffleTimeoutId = null;
+            if (pendingShuffles.remove(timeout.shuffleId) == null) {
+                return;
+            }
+            publicView.discardShuffle(timeout.shuffleId);
+            privateView.discardShuffle(timeout.shuffleId);
             if (timeout.dest.isOpen()) {
                 publicView.timedOut(timeout.dest);
             } else {
@@ -373,24 +458,25 @@ public class CroupierComp extends ComponentDefinition {
         trigger(cpt, timer);
     }
 
-    private void scheduleShuffleTimeout(NatedAddress dest) {
-        if (shuffleTimeoutId != null) {
+    private void scheduleShuffleTimeout(NatedAddress dest, UUID shuffleId) {
+        if (pendingShuffles.containsKey(shuffleId)) {
             log.warn("{} double starting shuffle timeout", logPrefix);
             return;
         }
         ScheduleTimeout spt = new ScheduleTimeout(croupierConfig.shufflePeriod / 2);
-        ShuffleTimeout sc = new ShuffleTimeout(spt, dest);
+        ShuffleTimeout sc = new ShuffleTimeout(spt, dest, shuffleId);
         spt.setTimeoutEvent(sc);
-        shuffleTimeoutId = sc.getTimeoutId();
+        pendingShuffles.put(shuffleId, sc);
         trigger(spt, timer);
     }
 
-    private void cancelShuffleTimeout() {
-        if (shuffleTimeoutId == null) {
+    private void cancelShuffleTimeout(UUID shuffleId) {
+        ShuffleTimeout sc = pendingShuffles.remove(shuffleId);
+        if (sc == null) {
             log.warn("{} double stopping shuffle timeout", logPrefix);
+            return;
         }
-        CancelTimeout cpt = new CancelTimeout(shuffleTimeoutId);
-        shuffleTimeoutId = null;
+        CancelTimeout cpt = new CancelTimeout(sc.getTimeoutId());
         trigger(cpt, timer);
     }
 
@@ -426,10 +512,12 @@ public class CroupierComp extends ComponentDefinition {
     public class ShuffleTimeout extends Timeout {
 
         public final NatedAddress dest;
+        public final UUID shuffleId;
 
-        public ShuffleTimeout(ScheduleTimeout request, NatedAddress dest) {
+        public ShuffleTimeout(ScheduleTimeout request, NatedAddress dest, UUID shuffleId) {
             super(request);
             this.dest = dest;
+            this.shuffleId = shuffleId;
         }
 
         @Override
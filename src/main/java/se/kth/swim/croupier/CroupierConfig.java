@@ -20,6 +20,7 @@ package se.kth.swim.croupier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.kth.swim.croupier.internal.CroupierView;
 
 /**
  * @author Alex Ormenisan <aaor@sics.se>
@@ -33,14 +34,46 @@ public class CroupierConfig {
     public final int shuffleSize;
     public final long shufflePeriod;
     public final long shuffleTimeout;
+    //TAIL and HEALER pick by age with a softmax of this temperature, 0 always picks the oldest
     public final double softMaxTemperature;
+    //shuffles in flight at the same time, each cycle starts new ones up to this number
+    public final int parallelShuffles;
+    //descriptors asked from each bootstrap node when shuffling with all of them
+    //at once on start, 0 shuffles with one bootstrap node per cycle instead
+    public final int joinShuffleSize;
 
-    public CroupierConfig(int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout) {
-        this.policy = CroupierSelectionPolicy.RANDOM;
+    public CroupierConfig(int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout,
+            CroupierSelectionPolicy policy, double softMaxTemperature, int parallelShuffles, int joinShuffleSize) {
+        if (softMaxTemperature < 0) {
+            throw new IllegalArgumentException("softmax temperature should not be negative");
+        }
+        if (parallelShuffles < 1 || parallelShuffles > CroupierView.MAX_OPEN_SHUFFLES) {
+            throw new IllegalArgumentException("parallel shuffles should be between 1 and " + CroupierView.MAX_OPEN_SHUFFLES);
+        }
+        if (joinShuffleSize < 0) {
+            throw new IllegalArgumentException("join shuffle size should not be negative");
+        }
+        this.policy = policy;
         this.viewSize = viewSize;
         this.shuffleSize = shuffleSize;
         this.shufflePeriod = shufflePeriod;
         this.shuffleTimeout = shuffleTimeout;
-        this.softMaxTemperature = 0;
+        this.softMaxTemperature = softMaxTemperature;
+        this.parallelShuffles = parallelShuffles;
+        this.joinShuffleSize = joinShuffleSize;
+    }
+
+    public CroupierConfig(int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout,
+            CroupierSelectionPolicy policy, double softMaxTemperature, int parallelShuffles) {
+        this(viewSize, shuffleSize, shufflePeriod, shuffleTimeout, policy, softMaxTemperature, parallelShuffles, 0);
+    }
+
+    public CroupierConfig(int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout,
+            CroupierSelectionPolicy policy, double softMaxTemperature) {
+        this(viewSize, shuffleSize, shufflePeriod, shuffleTimeout, policy, softMaxTemperature, 1);
+    }
+
+    public CroupierConfig(int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout) {
+        this(viewSize, shuffleSize, shufflePeriod, shuffleTimeout, CroupierSelectionPolicy.RANDOM, 0);
     }
 }
@@ -23,11 +23,13 @@ package se.kth.swim.croupier;
  */
 public enum CroupierSelectionPolicy {
 
-    RANDOM;
+    RANDOM, TAIL, HEALER;
 
     public static CroupierSelectionPolicy create(String policy) {
-        if (policy.compareToIgnoreCase(CroupierSelectionPolicy.RANDOM.name()) == 0) {
-            return RANDOM;
+        for (CroupierSelectionPolicy p : values()) {
+            if (policy.compareToIgnoreCase(p.name()) == 0) {
+                return p;
+            }
         }
         return null;
     }
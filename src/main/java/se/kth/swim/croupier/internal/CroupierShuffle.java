@@ -49,8 +49,16 @@ public class CroupierShuffle {
     }
     
     public static class Request extends Basic {
-        public Request(UUID id, Set<CroupierContainer> publicNodes, Set<CroupierContainer> privateNodes) {
+        //descriptors asked for in the response, 0 leaves it to the receiver
+        public final int responseSize;
+
+        public Request(UUID id, Set<CroupierContainer> publicNodes, Set<CroupierContainer> privateNodes, int responseSize) {
             super(id, publicNodes, privateNodes);
+            this.responseSize = responseSize;
+        }
+
+        public Request(UUID id, Set<CroupierContainer> publicNodes, Set<CroupierContainer> privateNodes) {
+            this(id, publicNodes, privateNodes, 0);
         }
         
         @Override
@@ -64,6 +72,7 @@ public class CroupierShuffle {
             hash = 31 * hash + (this.id != null ? this.id.hashCode() : 0);
             hash = 31 * hash + (this.publicNodes != null ? this.publicNodes.hashCode() : 0);
             hash = 31 * hash + (this.privateNodes != null ? this.privateNodes.hashCode() : 0);
+            hash = 31 * hash + this.responseSize;
             return hash;
         }
 
@@ -76,6 +85,9 @@ public class CroupierShuffle {
                 return false;
             }
             final Request other = (Request) obj;
+            if (this.responseSize != other.responseSize) {
+                return false;
+            }
             if (this.id != other.id && (this.id == null || !this.id.equals(other.id))) {
                 return false;
             }
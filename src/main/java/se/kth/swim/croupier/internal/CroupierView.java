@@ -20,214 +20,275 @@
  */
 package se.kth.swim.croupier.internal;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 import se.kth.swim.croupier.CroupierSelectionPolicy;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
 
 /**
+ * The view is kept in a dense array of entries with the descriptor ages in a
+ * parallel int array, and an index from the node address to the position in
+ * the array. Removing an entry moves the last one into its place. A random
+ * sample of k entries is a partial Fisher-Yates shuffle of the array itself:
+ * the first k positions end up holding the sample, so sampling is O(k) and
+ * does not build lists. The order of the entries carries no meaning. The
+ * published sample is shared between cycles and only rebuilt once the entries
+ * changed.
+ * <p>
+ * The entries sent in a shuffle are recorded under the shuffle id until the
+ * response is merged or the shuffle times out, and at most
+ * {@link #MAX_OPEN_SHUFFLES} records are kept, so the entries themselves do
+ * not remember their recipients.
+ *
  * @author Alex Ormenisan <aaor@sics.se>
  */
 public class CroupierView<C extends Object> {
 
+    //shuffles whose sent entries are remembered at the same time, the oldest
+    //record is dropped when a response or timeout was lost
+    public static final int MAX_OPEN_SHUFFLES = 16;
+
     private final int viewSize;
     private final BasicAddress selfAddress;
-    private final HashMap<BasicAddress, CroupierViewEntry<C>> d2e;
+    private CroupierViewEntry<C>[] entries;
+    private int[] ages;
+    private int size;
+    private final HashMap<BasicAddress, Integer> positions;
+    //shuffle id - sources of the entries sent in the shuffle, in order
+    private final LinkedHashMap<UUID, BasicAddress[]> shuffles;
     private final Random rand;
-
-    private Comparator<CroupierViewEntry> comparatorByAge = new Comparator<CroupierViewEntry>() {
-        @Override
-        public int compare(CroupierViewEntry o1, CroupierViewEntry o2) {
-            if (o1.getDescriptor().getAge() > o2.getDescriptor().getAge()) {
-                return 1;
-            } else if (o1.getDescriptor().getAge() < o2.getDescriptor().getAge()) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-    };
+    //published descriptors, null once the entries changed
+    private Set<CroupierContainer<C>> sample;
 
     public CroupierView(BasicAddress selfAddress, int viewSize, Random rand) {
         super();
         this.selfAddress = selfAddress;
         this.viewSize = viewSize;
-        this.d2e = new HashMap<BasicAddress, CroupierViewEntry<C>>();
+        this.entries = new CroupierViewEntry[Math.max(viewSize, 1)];
+        this.ages = new int[entries.length];
+        this.size = 0;
+        this.positions = new HashMap<BasicAddress, Integer>();
+        this.shuffles = new LinkedHashMap<UUID, BasicAddress[]>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, BasicAddress[]> eldest) {
+                return size() > MAX_OPEN_SHUFFLES;
+            }
+        };
         this.rand = rand;
     }
 
     public void incrementDescriptorAges() {
-        for (CroupierViewEntry entry : d2e.values()) {
-            entry.getDescriptor().incrementAge();
+        for (int i = 0; i < size; i++) {
+            ages[i]++;
         }
     }
 
+    /**
+     * RANDOM picks a uniformly random entry. TAIL picks the oldest entry and
+     * HEALER does the same but also drops it from a full view - if the peer is
+     * alive its fresh descriptor comes back in the shuffle response, if not
+     * the stale descriptor is gone without waiting for the timeout. With
+     * softmax TAIL and HEALER pick an entry with a probability that falls with
+     * its rank by age instead of always the oldest one. Only the entries not
+     * in <code>excluded</code> - peers already shuffling with us - are
+     * candidates, so an excluded entry is never dropped by HEALER.
+     * @return the selected peer, null if there is no candidate
+     */
     public NatedAddress selectPeerToShuffleWith(CroupierSelectionPolicy policy,
-            boolean softmax, double temperature) {
-        if (d2e.isEmpty()) {
+            boolean softmax, double temperature, Set<BasicAddress> excluded) {
+        int[] candidates = candidates(excluded);
+        if (candidates.length == 0) {
             return null;
         }
 
-        CroupierViewEntry selectedEntry = null;
-
-        selectedEntry = generateRandomSample(1).get(0);
-//        if (!softmax || policy == CroupierSelectionPolicy.RANDOM) {
-//            if (policy == CroupierSelectionPolicy.TAIL) {
-//                selectedEntry = Collections.max(d2e.values(), comparatorByAge);
-//            } else if (policy == CroupierSelectionPolicy.HEALER) {
-//                selectedEntry = Collections.max(d2e.values(), comparatorByAge);
-//            } else if (policy == CroupierSelectionPolicy.RANDOM) {
-//                selectedEntry = generateRandomSample(1).get(0);
-//            } else {
-//                throw new IllegalArgumentException("Invalid Croupier policy selected:" + policy);
-//            }
-//
-//        } else {
-//            ArrayList<CroupierViewEntry> entries = new ArrayList<CroupierViewEntry>(d2e.values());
-//            if (policy == CroupierSelectionPolicy.TAIL) {
-//                Collections.sort(entries, comparatorByAge);
-//            } else if (policy == CroupierSelectionPolicy.HEALER) {
-//                Collections.sort(entries, comparatorByAge);
-//            } else {
-//                throw new IllegalArgumentException("Invalid Croupier policy selected:" + policy);
-//            }
-//
-//            int index = softMaxIndex(entries, temperature);
-//            if (index == -1) {
-//                selectedEntry = entries.get(entries.size() - 1);
-//            } else {
-//                selectedEntry = entries.get(index);
-//            }
-//        }
-//
-//        // TODO - by not removing a reference to the node I am shuffling with, we
-//        // break the 'batched random walk' (Cyclon) behaviour. But it's more important
-//        // to keep the graph connected.
-//        if (d2e.size() >= viewSize) {
-//            removeEntry(selectedEntry.getDescriptor().getSource().getBase());
-//        }
-
-        return selectedEntry.getDescriptor().getSource();
-    }
+        int selected;
+        if (policy == CroupierSelectionPolicy.RANDOM) {
+            selected = candidates[rand.nextInt(candidates.length)];
+        } else if (policy == CroupierSelectionPolicy.TAIL || policy == CroupierSelectionPolicy.HEALER) {
+            if (softmax) {
+                selected = byAge(candidates)[softMaxIndex(candidates.length, temperature)];
+            } else {
+                selected = oldest(candidates);
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid Croupier policy selected:" + policy);
+        }
 
-    public Set<CroupierContainer<C>> initiatorCopySet(int count, NatedAddress destinationPeer) {
-        List<CroupierViewEntry> randomEntries = generateRandomSample(count);
-        Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : randomEntries) {
-            cacheEntry.sentTo((BasicAddress)destinationPeer.getBaseAdr());
-            descriptors.add(cacheEntry.getDescriptor().getCopy());
+        NatedAddress peer = entries[selected].getDescriptor().getSource();
+        // TODO - by not removing a reference to the node I am shuffling with, we
+        // break the 'batched random walk' (Cyclon) behaviour. But it's more important
+        // to keep the graph connected - so only the healer removes it.
+        if (policy == CroupierSelectionPolicy.HEALER && size >= viewSize) {
+            removeEntry((BasicAddress)peer.getBaseAdr());
         }
-        return descriptors;
+        return peer;
+    }
+
+    public Set<CroupierContainer<C>> initiatorCopySet(UUID shuffleId, int count, NatedAddress destinationPeer) {
+        return sampleCopySet(shuffleId, count);
     }
 
-    public Set<CroupierContainer<C>> receiverCopySet(int count, NatedAddress destinationPeer) {
-        List<CroupierViewEntry> randomEntries = generateRandomSample(count);
-        Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : randomEntries) {
-            cacheEntry.sentTo((BasicAddress)destinationPeer.getBaseAdr());
-            descriptors.add(cacheEntry.getDescriptor().getCopy());
+    public Set<CroupierContainer<C>> receiverCopySet(UUID shuffleId, int count, NatedAddress destinationPeer) {
+        return sampleCopySet(shuffleId, count);
+    }
+
+    private Set<CroupierContainer<C>> sampleCopySet(UUID shuffleId, int count) {
+        int n = randomSample(count);
+        Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>(n * 2);
+        BasicAddress[] sent = new BasicAddress[n];
+        for (int i = 0; i < n; i++) {
+            sent[i] = base(entries[i]);
+            descriptors.add(copy(i));
         }
+        shuffles.put(shuffleId, sent);
         return descriptors;
     }
 
-    public void selectToKeep(NatedAddress from, Set<CroupierContainer<C>> descriptors) {
+    /**
+     * merges the descriptors received in the shuffle, replacing first the
+     * entries we sent in the same shuffle - the record of the shuffle is
+     * discarded
+     */
+    public void selectToKeep(UUID shuffleId, NatedAddress from, Set<CroupierContainer<C>> descriptors) {
+        BasicAddress[] sent = shuffles.remove(shuffleId);
         BasicAddress baseFrom = (BasicAddress)from.getBaseAdr();
         if (baseFrom.equals(selfAddress)) {
             return;
         }
 
-        LinkedList<CroupierViewEntry> entriesSentToThisPeer = new LinkedList<CroupierViewEntry>();
-        for (CroupierViewEntry cacheEntry : d2e.values()) {
-            if (cacheEntry.wasSentTo(baseFrom)) {
-                entriesSentToThisPeer.add(cacheEntry);
-            }
+        LinkedList<BasicAddress> sentToThisPeer = new LinkedList<BasicAddress>();
+        if (sent != null) {
+            sentToThisPeer.addAll(Arrays.asList(sent));
         }
         //TODO Alex policy for removing the descriptor of the shuffle target - should it be the first i remove or last?
-        if (d2e.containsKey(baseFrom)) {
-            entriesSentToThisPeer.add(d2e.get(baseFrom));
-        }
+        sentToThisPeer.add(baseFrom);
 
         for (CroupierContainer<C> descriptor : descriptors) {
             BasicAddress baseSrc = (BasicAddress)descriptor.getSource().getBaseAdr();
             if (selfAddress.equals(baseSrc)) {
                 continue; // do not keep descriptor of self
             }
-            if (d2e.containsKey(baseSrc)) {
+            Integer pos = positions.get(baseSrc);
+            if (pos != null) {
                 // we already have an entry for this peer. keep the youngest one
-
-                CroupierViewEntry entry = d2e.get(baseSrc);
-                if (entry.getDescriptor().getAge() > descriptor.getAge()) {
+                if (ages[pos] > descriptor.getAge()) {
                     // we keep the lowest age descriptor
-                    CroupierViewEntry newCVE = new CroupierViewEntry(descriptor);
-
                     //TODO Alex what is the policy about descriptors I sent and received from src
-                    int index = entriesSentToThisPeer.indexOf(entry);
-                    if (index != -1) {
-                        entriesSentToThisPeer.set(index, newCVE);
-                    }
-
                     removeEntry(baseSrc);
-                    addEntry(newCVE);
+                    addEntry(new CroupierViewEntry(descriptor));
                 }
-            } else if (d2e.size() < viewSize) {
+            } else if (size < viewSize) {
                 // fill an empty slot
                 addEntry(new CroupierViewEntry(descriptor));
             } else {
-                // replace one slot out of those sent to this peer
-                CroupierViewEntry sentEntry = entriesSentToThisPeer.poll();
-                if (sentEntry != null) {
-                    removeEntry((BasicAddress)sentEntry.getDescriptor().getSource().getBaseAdr());
+                // replace one slot out of those sent to this peer, skipping
+                // the ones that already left the view
+                BasicAddress sentSrc;
+                do {
+                    sentSrc = sentToThisPeer.poll();
+                } while (sentSrc != null && !removeEntry(sentSrc));
+                if (sentSrc != null) {
                     addEntry(new CroupierViewEntry(descriptor));
                 }
             }
         }
     }
 
+    /**
+     * drops the record of a shuffle that will not get a response
+     */
+    public void discardShuffle(UUID shuffleId) {
+        shuffles.remove(shuffleId);
+    }
+
 //-------------------------------------------------------------------	
-    public final Set<CroupierContainer<C>> getAllCopy() {
-        Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>();
-        for (CroupierViewEntry cacheEntry : d2e.values()) {
-            descriptors.add(cacheEntry.getDescriptor().getCopy());
+    /**
+     * @return the descriptors of the view with the age they were received
+     * with - an unmodifiable set shared until the entries change
+     */
+    public final Set<CroupierContainer<C>> sample() {
+        if (sample == null) {
+            Set<CroupierContainer<C>> descriptors = new HashSet<CroupierContainer<C>>(size * 2);
+            for (int i = 0; i < size; i++) {
+                descriptors.add(entries[i].getDescriptor());
+            }
+            sample = Collections.unmodifiableSet(descriptors);
         }
-        return descriptors;
+        return sample;
+    }
+
+    //descriptor at the position with its current age
+    private CroupierContainer<C> copy(int pos) {
+        CroupierContainer<C> descriptor = entries[pos].getDescriptor();
+        return new CroupierContainer<C>(descriptor.getSource(), descriptor.getContent(), ages[pos]);
     }
 
-    private List<CroupierViewEntry> generateRandomSample(int n) {
-        List<CroupierViewEntry> randomEntries = new ArrayList<CroupierViewEntry>();
-        if (n >= d2e.size()) {
-            //return a copy of all entries
-            randomEntries.addAll(d2e.values());
-            return randomEntries;
+    /**
+     * partial Fisher-Yates - moves a uniform random sample of n entries to the
+     * first positions of the array
+     * @return the sample size, n or the view size if smaller
+     */
+    private int randomSample(int n) {
+        if (n >= size) {
+            return size;
         }
-        ArrayList<CroupierViewEntry> entries = new ArrayList<CroupierViewEntry>(d2e.values());
-        // Don Knuth, The Art of Computer Programming, Algorithm S(3.4.2)
-        int t = 0, m = 0, N = d2e.size();
-        while (m < n) {
-            int x = rand.nextInt(N - t);
-            if (x < n - m) {
-                randomEntries.add(entries.get(t));
-                m += 1;
-                t += 1;
-            } else {
-                t += 1;
-            }
+        for (int i = 0; i < n; i++) {
+            swap(i, i + rand.nextInt(size - i));
         }
-        return randomEntries;
+        return n;
+    }
+
+    private void swap(int i, int j) {
+        if (i == j) {
+            return;
+        }
+        CroupierViewEntry<C> entry = entries[i];
+        int age = ages[i];
+        place(i, entries[j], ages[j]);
+        place(j, entry, age);
+    }
+
+    private void place(int pos, CroupierViewEntry<C> entry, int age) {
+        entries[pos] = entry;
+        ages[pos] = age;
+        positions.put(base(entry), pos);
+    }
+
+    private static BasicAddress base(CroupierViewEntry<?> entry) {
+        return (BasicAddress)entry.getDescriptor().getSource().getBaseAdr();
     }
 
-    private void addEntry(CroupierViewEntry entry) {
-        d2e.put((BasicAddress)entry.getDescriptor().getSource().getBaseAdr(), entry);
+    private void addEntry(CroupierViewEntry<C> entry) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size << 1);
+            ages = Arrays.copyOf(ages, size << 1);
+        }
+        place(size, entry, entry.getDescriptor().getAge());
+        size++;
+        sample = null;
     }
 
     private boolean removeEntry(BasicAddress src) {
-        return d2e.remove(src) != null;
+        Integer pos = positions.remove(src);
+        if (pos == null) {
+            return false;
+        }
+        size--;
+        if (pos != size) {
+            place(pos, entries[size], ages[size]);
+        }
+        entries[size] = null;
+        sample = null;
+        return true;
     }
 
     public void timedOut(NatedAddress src) {
@@ -235,37 +296,74 @@ public class CroupierView<C extends Object> {
     }
 
     public boolean isEmpty() {
-        return d2e.isEmpty();
+        return size == 0;
     }
 
     public int size() {
-        return d2e.size();
+        return size;
     }
 
-    //TODO Alex check if it matched to Abhi's soft max and replace
-    private int softMaxIndex(ArrayList<CroupierViewEntry> entries, double temperature) {
-        double rnd = rand.nextDouble();
+    //positions of the entries that are not excluded
+    private int[] candidates(Set<BasicAddress> excluded) {
+        int[] candidates = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (!excluded.contains(base(entries[i]))) {
+                candidates[n++] = i;
+            }
+        }
+        return n == size ? candidates : Arrays.copyOf(candidates, n);
+    }
+
+    private int oldest(int[] positions) {
+        int oldest = positions[0];
+        for (int pos : positions) {
+            if (ages[pos] > ages[oldest]) {
+                oldest = pos;
+            }
+        }
+        return oldest;
+    }
+
+    //the positions sorted oldest first - insertion sort, views are small
+    private int[] byAge(int[] positions) {
+        int[] byAge = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int j = i;
+            while (j > 0 && ages[byAge[j - 1]] < ages[positions[i]]) {
+                byAge[j] = byAge[j - 1];
+                j--;
+            }
+            byAge[j] = positions[i];
+        }
+        return byAge;
+    }
+
+    /**
+     * softmax over the ranks 0..n-1, rank 0 is the most likely one and every
+     * next rank is exp(1/temperature) times less likely - the weights are
+     * relative to rank 0 so they do not overflow at low temperatures. A
+     * temperature of 0 is the limit, always rank 0.
+     */
+    private int softMaxIndex(int n, double temperature) {
+        if (temperature <= 0) {
+            return 0;
+        }
+        double[] values = new double[n];
         double total = 0.0d;
-        double[] values = new double[entries.size()];
-        int j = entries.size() + 1;
-        for (int i = 0; i < entries.size(); i++) {
-            // get inverse of values - lowest have highest value.
-            double val = j;
-            j--;
-            values[i] = Math.exp(val / temperature);
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.exp(-i / temperature);
             total += values[i];
         }
 
-        for (int i = 0; i < values.length; i++) {
-            if (i != 0) {
-                values[i] += values[i - 1];
-            }
-            // normalise the probability
-            double normalisedReward = values[i] / total;
-            if (normalisedReward >= rnd) {
+        double rnd = rand.nextDouble() * total;
+        double cumulative = 0.0d;
+        for (int i = 0; i < n; i++) {
+            cumulative += values[i];
+            if (cumulative >= rnd) {
                 return i;
             }
         }
-        return -1;
+        return n - 1;
     }
 }
@@ -21,17 +21,11 @@
 package se.kth.swim.croupier.internal;
 
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
-import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
 
 /**
  * The <code>RandomViewEntry</code> class represents an entry in a node's
- * randomView. It contains a node descriptor and it marks when and to what peer this
- * entry was last sent to. This information is used in the process of updating
- * the randomView during a shuffle, so that the first randomView entries removed are those
- * that were sent to the peer from whom we received the current shuffle
- * response.
+ * randomView. It contains a node descriptor; the peers it was sent to are
+ * recorded per shuffle by the {@link CroupierView}.
  * 
  * @author Cosmin Arad <cosmin@sics.se>, Gautier Berthou
  * @author Alex Ormenisan <aaor@sics.se>
@@ -55,19 +49,10 @@ public class CroupierViewEntry<C extends Object> {
 
     private final CroupierContainer<C> cc;
     private final long addedAt;
-    private long sentAt;
-    private final Set<BasicAddress> sentTo = new HashSet<BasicAddress>();
 
     public CroupierViewEntry(CroupierContainer<C> cc) {
         this.cc = cc;
         this.addedAt = System.currentTimeMillis();
-        this.sentAt = 0;
-    }
-
-
-    public void sentTo(BasicAddress peer) {
-        sentTo.add(peer);
-        sentAt = System.currentTimeMillis();
     }
 
     public CroupierContainer<C> getDescriptor() {
@@ -78,16 +63,8 @@ public class CroupierViewEntry<C extends Object> {
         return addedAt;
     }
 
-    public long getSentAt() {
-        return sentAt;
-    }
-
-    public boolean wasSentTo(BasicAddress peer) {
-        return sentTo == null ? false : sentTo.contains(peer);
-    }
-    
     @Override
     public String toString() {
-        return cc.toString() + ": addedAt(" + addedAt + "): sentAt:(" + sentAt +")";
+        return cc.toString() + ": addedAt(" + addedAt + ")";
     }
 }
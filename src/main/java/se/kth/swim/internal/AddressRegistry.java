@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Canonical address of every node a component heard of, keyed by the primitive
+ * node id. Addresses arrive as fresh objects in every message; interning
+ * them keeps one instance per node and route, shared by the membership table
+ * and every piggyback snapshot, instead of one per received update. A new
+ * instance is only compared with the canonical one by id, nat type, ip, port
+ * and the parent ids, held as a sorted int array, so interning neither hashes
+ * addresses nor allocates when the route is unchanged.
+ */
+public class AddressRegistry {
+
+    private final Map<Integer, Entry> entries;
+
+    public AddressRegistry() {
+        this.entries = new HashMap<Integer, Entry>();
+    }
+
+    /**
+     * @return the canonical address equal to the given one - the given one
+     * becomes canonical if the node or its route is new
+     */
+    public NatedAddress intern(NatedAddress address) {
+        Entry entry = entries.get(address.getId());
+        if (entry != null && entry.matches(address)) {
+            return entry.address;
+        }
+        entries.put(address.getId(), new Entry(address, parentIds(address)));
+        return address;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static int[] parentIds(NatedAddress address) {
+        if (address.isOpen() || address.getParents() == null) {
+            return new int[0];
+        }
+        int[] ids = new int[address.getParents().size()];
+        int n = 0;
+        for (NatedAddress parent : address.getParents()) {
+            ids[n++] = parent.getId();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static class Entry {
+
+        private final NatedAddress address;
+        private final int[] parents;
+
+        Entry(NatedAddress address, int[] parents) {
+            this.address = address;
+            this.parents = parents;
+        }
+
+        boolean matches(NatedAddress other) {
+            if (other == address) {
+                return true;
+            }
+            if (other.isOpen() != address.isOpen() || other.getNatType() != address.getNatType()
+                    || other.getPort() != address.getPort() || !other.getIp().equals(address.getIp())) {
+                return false;
+            }
+            if (other.isOpen()) {
+                return true;
+            }
+            if (other.getParents() == null || other.getParents().size() != parents.length) {
+                return false;
+            }
+            for (NatedAddress parent : other.getParents()) {
+                if (Arrays.binarySearch(parents, parent.getId()) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
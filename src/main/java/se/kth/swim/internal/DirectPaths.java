@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct paths a nated node punched to other nated nodes. A path stays usable
+ * while direct traffic keeps coming from the peer; once the peer is silent
+ * for <code>idle</code> ms the hole is taken as closed and traffic falls back
+ * to the relays. Our own sends do not refresh a path - they say nothing of
+ * whether the peer still holds it. A peer that closed its side falls back to
+ * the relays, so relayed traffic from it closes our side at once instead of
+ * after the idle time, during which our direct sends would be dropped by its
+ * nat - save for <code>punchTimeout</code> ms after the punch, while messages
+ * relayed before it may still be arriving. A punch attempt is answered within
+ * <code>punchTimeout</code> ms or dropped, and a peer is not tried again for
+ * <code>retry</code> ms after an attempt, so a pair of nats that cannot punch
+ * does not renegotiate on every probe.
+ */
+public class DirectPaths {
+
+    private final long idle;
+    private final long punchTimeout;
+    private final long retry;
+    //peer id to the last direct traffic from it
+    private final Map<Integer, Long> paths;
+    //peer id to when the path was punched
+    private final Map<Integer, Long> punchedAt;
+    //peer id to the start of the last punch attempt
+    private final Map<Integer, Long> attempts;
+
+    public DirectPaths(long idle, long punchTimeout, long retry) {
+        this.idle = idle;
+        this.punchTimeout = punchTimeout;
+        this.retry = retry;
+        this.paths = new HashMap<Integer, Long>();
+        this.punchedAt = new HashMap<Integer, Long>();
+        this.attempts = new HashMap<Integer, Long>();
+    }
+
+    /**
+     * @return true if there is a live direct path to the peer - a path idle
+     * for too long is closed
+     */
+    public boolean isDirect(int id, long now) {
+        Long heardAt = paths.get(id);
+        if (heardAt == null) {
+            return false;
+        }
+        if (now - heardAt > idle) {
+            close(id);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a direct message from the peer passes the nat - there is
+     * a path or we are punching towards it
+     */
+    public boolean accepts(int id, long now) {
+        if (isDirect(id, now)) {
+            return true;
+        }
+        Long attemptAt = attempts.get(id);
+        return attemptAt != null && now - attemptAt <= punchTimeout;
+    }
+
+    /**
+     * @return true if a punch towards the peer should be started, in which
+     * case it is recorded as attempted
+     */
+    public boolean attempt(int id, long now) {
+        if (isDirect(id, now)) {
+            return false;
+        }
+        Long attemptAt = attempts.get(id);
+        if (attemptAt != null && now - attemptAt <= retry) {
+            return false;
+        }
+        attempts.put(id, now);
+        return true;
+    }
+
+    /**
+     * the hole to the peer holds - records the path and keeps it open
+     */
+    public void punched(int id, long now) {
+        paths.put(id, now);
+        punchedAt.put(id, now);
+    }
+
+    private void close(int id) {
+        paths.remove(id);
+        punchedAt.remove(id);
+    }
+
+    /**
+     * direct traffic from the peer keeps an existing path open
+     */
+    public void heard(int id, long now) {
+        if (paths.containsKey(id)) {
+            paths.put(id, now);
+        }
+    }
+
+    /**
+     * traffic from the peer came through the relays - the peer no longer uses
+     * the path, so it is closed
+     */
+    public void relayed(int id, long now) {
+        Long punchTime = punchedAt.get(id);
+        if (punchTime != null && now - punchTime > punchTimeout) {
+            close(id);
+        }
+    }
+
+    public int size() {
+        return paths.size();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import se.kth.swim.msg.PiggybackBatch;
+import se.kth.swim.msg.RelayRoute;
+import se.kth.swim.msg.net.NodeStatus;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Holds the membership changes that still have to be gossiped. Only the ids of
+ * changed members are kept here - not the whole membership - and every message
+ * gets at most <code>maxUpdates</code> of them, picking the ones sent the
+ * fewest times first, so the piggyback size does not grow with the cluster.
+ * The remaining dissemination count of a change lives in the
+ * {@link MembershipTable} and starts at lambda * log(N) for the current number
+ * of live members N.
+ */
+public class DisseminationBuffer {
+
+    private final MembershipTable members;
+    private final int maxUpdates;
+    private final int lambda;
+    private final Map<Integer, Entry> entries;
+    private final TreeSet<Entry> queue;
+    private long nextSeq;
+    //scratch space for building snapshots
+    private final NatedAddress[] addresses;
+    private final NodeStatus[] statuses;
+    private final int[] incarnations;
+    private final int[] suspectors;
+    private final Entry[] sent;
+
+    private static final Comparator<Entry> bySentTimes = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.sent != o2.sent) {
+                return o1.sent < o2.sent ? -1 : 1;
+            }
+            if (o1.seq != o2.seq) {
+                return o1.seq < o2.seq ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    public DisseminationBuffer(MembershipTable members, int maxUpdates, int lambda) {
+        if (maxUpdates <= 0) {
+            throw new IllegalArgumentException("piggyback size should be positive");
+        }
+        if (lambda <= 0) {
+            throw new IllegalArgumentException("dissemination multiplier should be positive");
+        }
+        this.members = members;
+        this.maxUpdates = maxUpdates;
+        this.lambda = lambda;
+        this.entries = new HashMap<Integer, Entry>();
+        this.queue = new TreeSet<Entry>(bySentTimes);
+        this.nextSeq = 0;
+        this.addresses = new NatedAddress[maxUpdates];
+        this.statuses = new NodeStatus[maxUpdates];
+        this.incarnations = new int[maxUpdates];
+        this.suspectors = new int[maxUpdates];
+        this.sent = new Entry[maxUpdates];
+    }
+
+    /**
+     * @return how many times a change is piggybacked, recomputed from the live
+     * member count so it follows the cluster size
+     */
+    public int retransmitLimit() {
+        int live = members.size() - members.count(NodeStatus.FAILED);
+        return retransmitLimit(lambda, live);
+    }
+
+    /**
+     * retransmit limit of an update, lambda * log(N) as in the SWIM paper -
+     * log rounded up and never below one, so small clusters still gossip
+     */
+    static int retransmitLimit(int lambda, int liveMembers) {
+        int log = (int) Math.ceil(Math.log10(liveMembers + 1));
+        return lambda * Math.max(log, 1);
+    }
+
+    /**
+     * queue a membership change - replaces any older change about the same member
+     */
+    public void add(int id) {
+        Entry old = entries.remove(id);
+        if (old != null) {
+            queue.remove(old);
+        }
+        Entry entry = new Entry(id, nextSeq++);
+        entries.put(id, entry);
+        queue.add(entry);
+    }
+
+    public void remove(int id) {
+        Entry old = entries.remove(id);
+        if (old != null) {
+            queue.remove(old);
+        }
+    }
+
+    /**
+     * @return snapshot of the next changes to piggyback, carrying the given
+     * relay route changes along - a change goes out as many times as its
+     * dissemination count and is then dropped from the buffer
+     */
+    public PiggybackBatch select(RelayRoute[] routes) {
+        int n = 0;
+        while (n < maxUpdates && !queue.isEmpty()) {
+            Entry entry = queue.pollFirst();
+            int slot = members.indexOf(entry.id);
+            if (slot == -1) {
+                entries.remove(entry.id);
+                continue;
+            }
+            //new node changes status, after enough dissemination
+            if (members.disseminateTimesAt(slot) <= 0 && members.statusAt(slot) == NodeStatus.NEW) {
+                members.setStatusAt(slot, NodeStatus.ALIVE);
+                members.setDisseminateTimesAt(slot, retransmitLimit());
+                entry.sent = 0;
+            }
+            if (members.disseminateTimesAt(slot) <= 0) {
+                //don t disseminate if it has been disseminated enough
+                entries.remove(entry.id);
+                continue;
+            }
+            members.setDisseminateTimesAt(slot, members.disseminateTimesAt(slot) - 1);
+            entry.sent++;
+            addresses[n] = members.addressAt(slot);
+            statuses[n] = members.statusAt(slot);
+            incarnations[n] = members.incarnationAt(slot);
+            suspectors[n] = members.suspectorAt(slot);
+            sent[n] = entry;
+            n++;
+        }
+        for (int i = 0; i < n; i++) {
+            queue.add(sent[i]);
+            sent[i] = null;
+        }
+        return PiggybackBatch.copyOf(addresses, statuses, incarnations, suspectors, n, routes);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private static class Entry {
+
+        private final int id;
+        private final long seq;
+        private int sent;
+
+        Entry(int id, long seq) {
+            this.id = id;
+            this.seq = seq;
+            this.sent = 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops the second copy of a message delivered through two relays. A message
+ * is identified by its source, type and sequence number; only the most recent
+ * <code>capacity</code> identities are remembered, which is plenty since both
+ * copies arrive within a relay round trip of each other.
+ */
+public class DuplicateFilter {
+
+    private final Map<Key, Boolean> seen;
+
+    public DuplicateFilter(final int capacity) {
+        this.seen = new LinkedHashMap<Key, Boolean>(capacity * 2, 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return true the first time a message is seen, false for a duplicate
+     */
+    public boolean firstSeen(int source, Class<?> type, int sn) {
+        return seen.put(new Key(source, type, sn), Boolean.TRUE) == null;
+    }
+
+    public int size() {
+        return seen.size();
+    }
+
+    private static final class Key {
+
+        private final int source;
+        private final Class<?> type;
+        private final int sn;
+
+        Key(int source, Class<?> type, int sn) {
+            this.source = source;
+            this.type = type;
+            this.sn = sn;
+        }
+
+        @Override
+        public int hashCode() {
+            return (source * 31 + sn) * 31 + type.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return source == other.source && sn == other.sn && type == other.type;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+/**
+ * Local health score of Lifeguard. Events that hint that this node, and not
+ * its peers, is slow - probes nobody answered, ping-req relays that did not
+ * even nack, having to refute a suspicion about ourselves - raise the score,
+ * answered probes lower it. Probe interval and timeouts are stretched by
+ * score + 1, so a starved node slows down instead of suspecting healthy
+ * peers. A maximum score of 0 turns the mechanism off.
+ */
+public class LocalHealth {
+
+    private final int max;
+    private int score;
+
+    public LocalHealth(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("local health maximum should not be negative");
+        }
+        this.max = max;
+        this.score = 0;
+    }
+
+    public void raise(int delta) {
+        score = Math.min(max, score + delta);
+    }
+
+    public void lower() {
+        score = Math.max(0, score - 1);
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int multiplier() {
+        return score + 1;
+    }
+
+    public long scale(long timeout) {
+        return timeout * multiplier();
+    }
+}
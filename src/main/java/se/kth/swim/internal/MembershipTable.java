@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import se.kth.swim.msg.net.NodeStatus;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Membership list of a SWIM node - one open addressing (linear probing) table
+ * keyed by the primitive node id, with the per member state held in parallel
+ * arrays. Members are never removed, only moved between states, so slots do
+ * not need tombstones. The number of members in each state is kept up to date
+ * on every transition.
+ */
+public class MembershipTable {
+
+    private static final int EMPTY = 0;
+    private static final NodeStatus[] STATUSES = NodeStatus.values();
+
+    private int[] keys;
+    //NodeStatus ordinal + 1, EMPTY for a free slot
+    private byte[] states;
+    private int[] incarnations;
+    private int[] disseminateTimes;
+    //member that raised the suspicion of a SUSPECTED member, -1 otherwise
+    private int[] suspectors;
+    private NatedAddress[] addresses;
+    private int mask;
+    private int size;
+    private final int[] statusCounts;
+
+    public MembershipTable(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        this.size = 0;
+        this.statusCounts = new int[STATUSES.length];
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        states = new byte[capacity];
+        incarnations = new int[capacity];
+        disseminateTimes = new int[capacity];
+        suspectors = new int[capacity];
+        addresses = new NatedAddress[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return slot of the member or -1 if unknown
+     */
+    public int indexOf(int id) {
+        int slot = hash(id) & mask;
+        while (states[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * inserts a new member or overwrites the address, status and incarnation
+     * of a known one
+     * @return slot of the member
+     */
+    public int put(NatedAddress address, NodeStatus status, int incarnation) {
+        int id = address.getId();
+        int slot = indexOf(id);
+        if (slot == -1) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+            slot = hash(id) & mask;
+            while (states[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            disseminateTimes[slot] = 0;
+            size++;
+        } else {
+            statusCounts[states[slot] - 1]--;
+        }
+        states[slot] = (byte) (status.ordinal() + 1);
+        statusCounts[status.ordinal()]++;
+        incarnations[slot] = incarnation;
+        suspectors[slot] = -1;
+        addresses[slot] = address;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        byte[] oldStates = states;
+        int[] oldIncarnations = incarnations;
+        int[] oldDisseminateTimes = disseminateTimes;
+        int[] oldSuspectors = suspectors;
+        NatedAddress[] oldAddresses = addresses;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (states[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            states[slot] = oldStates[i];
+            incarnations[slot] = oldIncarnations[i];
+            disseminateTimes[slot] = oldDisseminateTimes[i];
+            suspectors[slot] = oldSuspectors[i];
+            addresses[slot] = oldAddresses[i];
+        }
+    }
+
+    public void setStatusAt(int slot, NodeStatus status) {
+        statusCounts[states[slot] - 1]--;
+        states[slot] = (byte) (status.ordinal() + 1);
+        statusCounts[status.ordinal()]++;
+        if (status != NodeStatus.SUSPECTED) {
+            suspectors[slot] = -1;
+        }
+    }
+
+    /**
+     * SWIM precedence of gossiped state over the state held for a member:
+     * Alive(i) overrides Alive, Suspect and Failed of an older incarnation,
+     * Suspect(i) overrides Alive(j) for i >= j and Suspect(j) for i > j, and
+     * Failed(i) overrides a non failed status of any incarnation j <= i. A
+     * rejoining New overrides Failed whatever its incarnation. Anything
+     * overrides an unknown member, <code>slot</code> -1.
+     */
+    public boolean overrides(int slot, NodeStatus status, int incarnation) {
+        if (slot == -1) {
+            return true;
+        }
+        NodeStatus current = statusAt(slot);
+        int known = incarnations[slot];
+        switch (status) {
+            case NEW:
+                return current == NodeStatus.FAILED || incarnation > known;
+            case ALIVE:
+                return incarnation > known;
+            case SUSPECTED:
+                if (current == NodeStatus.ALIVE || current == NodeStatus.NEW) {
+                    return incarnation >= known;
+                }
+                return current == NodeStatus.SUSPECTED && incarnation > known;
+            case FAILED:
+                return current != NodeStatus.FAILED && incarnation >= known;
+            default:
+                return false;
+        }
+    }
+
+    public NodeStatus statusAt(int slot) {
+        return STATUSES[states[slot] - 1];
+    }
+
+    public NatedAddress addressAt(int slot) {
+        return addresses[slot];
+    }
+
+    public void setAddressAt(int slot, NatedAddress address) {
+        addresses[slot] = address;
+    }
+
+    public int incarnationAt(int slot) {
+        return incarnations[slot];
+    }
+
+    public void setIncarnationAt(int slot, int incarnation) {
+        incarnations[slot] = incarnation;
+    }
+
+    public int disseminateTimesAt(int slot) {
+        return disseminateTimes[slot];
+    }
+
+    public void setDisseminateTimesAt(int slot, int times) {
+        disseminateTimes[slot] = times;
+    }
+
+    /**
+     * @return id of the member that raised the suspicion, -1 if the member is
+     * not suspected or the suspector is unknown
+     */
+    public int suspectorAt(int slot) {
+        return suspectors[slot];
+    }
+
+    public void setSuspectorAt(int slot, int suspector) {
+        suspectors[slot] = suspector;
+    }
+
+    public int count(NodeStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import se.kth.swim.msg.RelayLoad;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Relay parent candidates of a nated node - the open nodes of the croupier
+ * public sample. Candidates are scored by their smoothed nat ping round trip
+ * time, stretched by the relay load they advertise, lower is better. The best
+ * candidates that are not parents are kept as warm standbys: they are nat
+ * pinged like the parents, so a failed parent is replaced by a measured, live
+ * node. Candidates never measured rank after measured ones, in a seeded random
+ * order, and a candidate that missed a nat ping is dropped until a later
+ * sample offers it again.
+ */
+public class ParentSelector {
+
+    private final Random rand;
+    private final RttEstimator rtt;
+    private final Map<Integer, Candidate> candidates;
+
+    public ParentSelector(Random rand, RttEstimator rtt) {
+        this.rand = rand;
+        this.rtt = rtt;
+        this.candidates = new HashMap<Integer, Candidate>();
+    }
+
+    /**
+     * adds a candidate or refreshes its address and advertised load
+     * @param load the relay load advertised by the candidate, null if unknown
+     */
+    public void offer(NatedAddress address, RelayLoad load) {
+        if (!address.isOpen()) {
+            return;
+        }
+        Candidate candidate = candidates.get(address.getId());
+        if (candidate == null) {
+            candidate = new Candidate(address, rand.nextInt());
+            candidates.put(address.getId(), candidate);
+        }
+        candidate.address = address;
+        candidate.load = load == null ? 0 : load.load();
+        candidate.messageRate = load == null ? 0 : load.getMessageRate();
+    }
+
+    public void rttSample(int id, long sample) {
+        rtt.sample(id, sample);
+    }
+
+    public void failed(int id) {
+        candidates.remove(id);
+    }
+
+    /**
+     * @return the best candidates that are not parents, at most <code>count</code>
+     */
+    public List<NatedAddress> standby(Collection<NatedAddress> parents, int count) {
+        Set<Integer> excluded = ids(parents);
+        List<Candidate> ranked = new ArrayList<Candidate>();
+        for (Candidate candidate : candidates.values()) {
+            if (!excluded.contains(candidate.address.getId())) {
+                ranked.add(candidate);
+            }
+        }
+        Collections.sort(ranked, byScore);
+        List<NatedAddress> standby = new ArrayList<NatedAddress>();
+        for (int i = 0; i < ranked.size() && i < count; i++) {
+            standby.add(ranked.get(i).address);
+        }
+        return standby;
+    }
+
+    /**
+     * @return the best measured candidate that is not a parent or null
+     */
+    public NatedAddress replacement(Collection<NatedAddress> parents) {
+        Set<Integer> excluded = ids(parents);
+        Candidate best = null;
+        for (Candidate candidate : candidates.values()) {
+            if (excluded.contains(candidate.address.getId()) || rtt.smoothedRtt(candidate.address.getId()) < 0) {
+                continue;
+            }
+            if (best == null || byScore.compare(candidate, best) < 0) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : best.address;
+    }
+
+    /**
+     * @return the candidate advertising the lowest load that still has spare
+     * capacity, other than <code>excludedId</code>, or null - where a relay
+     * redirects the children it refuses. Equally loaded candidates are told
+     * apart by the message rate they relay.
+     */
+    public NatedAddress leastLoaded(int excludedId) {
+        Candidate best = null;
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.address.getId() == excludedId || candidate.load >= 1) {
+                continue;
+            }
+            if (best == null || byLoad.compare(candidate, best) < 0) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : best.address;
+    }
+
+    /**
+     * @return up to <code>count</code> parents, lowest measured rtt first and
+     * the unmeasured ones after them in random order
+     */
+    public List<NatedAddress> fastest(Collection<NatedAddress> parents, int count) {
+        List<NatedAddress> ranked = new ArrayList<NatedAddress>(parents);
+        Collections.shuffle(ranked, rand);
+        Collections.sort(ranked, new Comparator<NatedAddress>() {
+            @Override
+            public int compare(NatedAddress o1, NatedAddress o2) {
+                long r1 = measured(o1);
+                long r2 = measured(o2);
+                return r1 < r2 ? -1 : (r1 == r2 ? 0 : 1);
+            }
+        });
+        return ranked.subList(0, Math.min(count, ranked.size()));
+    }
+
+    private long measured(NatedAddress parent) {
+        long srtt = rtt.smoothedRtt(parent.getId());
+        return srtt < 0 ? Long.MAX_VALUE : srtt;
+    }
+
+    public int size() {
+        return candidates.size();
+    }
+
+    private static Set<Integer> ids(Collection<NatedAddress> addresses) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (NatedAddress address : addresses) {
+            ids.add(address.getId());
+        }
+        return ids;
+    }
+
+    private double score(Candidate candidate) {
+        long srtt = rtt.smoothedRtt(candidate.address.getId());
+        if (srtt < 0) {
+            return Double.MAX_VALUE;
+        }
+        return srtt * (1 + candidate.load);
+    }
+
+    private final Comparator<Candidate> byScore = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate o1, Candidate o2) {
+            int cmp = Double.compare(score(o1), score(o2));
+            if (cmp != 0) {
+                return cmp;
+            }
+            return o1.tieBreak < o2.tieBreak ? -1 : (o1.tieBreak == o2.tieBreak ? 0 : 1);
+        }
+    };
+
+    private final Comparator<Candidate> byLoad = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate o1, Candidate o2) {
+            int cmp = Double.compare(o1.load, o2.load);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Double.compare(o1.messageRate, o2.messageRate);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return byScore.compare(o1, o2);
+        }
+    };
+
+    private static class Candidate {
+
+        private NatedAddress address;
+        private double load;
+        private double messageRate;
+        private final int tieBreak;
+
+        Candidate(NatedAddress address, int tieBreak) {
+            this.address = address;
+            this.tieBreak = tieBreak;
+        }
+    }
+}
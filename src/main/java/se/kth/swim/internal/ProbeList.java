@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round robin probe target selection of the SWIM paper (section 4.3). The
+ * member ids are kept in a shuffled array that is walked with a cursor and
+ * reshuffled once every member was visited, so each member is probed once per
+ * pass. Ids before the cursor were already visited in the current pass. New
+ * members are placed at a random position among the ones not yet visited and
+ * removed members are swapped out. The position of every id is held in an open
+ * addressing (linear probing) table keyed by the primitive id, with removed
+ * ids backward shifted out, so selection is O(1) and does not allocate. Ids
+ * are not negative, -1 stands for no member.
+ */
+public class ProbeList {
+
+    private final Random rand;
+    private int[] ids;
+    private int size;
+    private int cursor;
+    //id to its position in ids
+    private int[] keys;
+    private boolean[] used;
+    private int[] positions;
+    private int mask;
+
+    public ProbeList(Random rand) {
+        this.rand = rand;
+        this.ids = new int[16];
+        this.size = 0;
+        this.cursor = 0;
+        allocate(32);
+    }
+
+    private void allocate(int tableSize) {
+        keys = new int[tableSize];
+        used = new boolean[tableSize];
+        positions = new int[tableSize];
+        mask = tableSize - 1;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(int id) {
+        int slot = hash(id) & mask;
+        while (used[slot]) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean contains(int id) {
+        return slotOf(id) != -1;
+    }
+
+    public void add(int id) {
+        if (slotOf(id) != -1) {
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        int slot = hash(id) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = id;
+        positions[slot] = size;
+        ids[size] = id;
+        size++;
+        //random position among the members not probed yet in this pass
+        swap(size - 1, cursor + rand.nextInt(size - cursor));
+    }
+
+    private void rehash(int tableSize) {
+        int[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        int[] oldPositions = positions;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            positions[slot] = oldPositions[i];
+        }
+    }
+
+    public void remove(int id) {
+        int slot = slotOf(id);
+        if (slot == -1) {
+            return;
+        }
+        int p = positions[slot];
+        unlink(slot);
+        if (p < cursor) {
+            //keep the visited members before the cursor
+            cursor--;
+            move(cursor, p);
+            p = cursor;
+        }
+        size--;
+        move(size, p);
+    }
+
+    //frees the slot - moves up the entries of the probe run that would no
+    //longer be found past it
+    private void unlink(int slot) {
+        used[slot] = false;
+        int next = (slot + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                used[slot] = true;
+                keys[slot] = keys[next];
+                positions[slot] = positions[next];
+                used[next] = false;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the next member to probe or -1 if there is none
+     */
+    public int next() {
+        if (size == 0) {
+            return -1;
+        }
+        if (cursor >= size) {
+            shuffle();
+            cursor = 0;
+        }
+        return ids[cursor++];
+    }
+
+    /**
+     * @return a uniformly random member different from the excluded ones or
+     * -1 if there is none - does not move the round robin cursor
+     */
+    public int random(int... excluded) {
+        return random(excluded, excluded.length);
+    }
+
+    /**
+     * @return a uniformly random member different from the first
+     * <code>excludedCount</code> ids of <code>excluded</code> or -1 if there is
+     * none - does not move the round robin cursor
+     */
+    public int random(int[] excluded, int excludedCount) {
+        int candidates = size;
+        for (int i = 0; i < excludedCount; i++) {
+            if (contains(excluded[i])) {
+                candidates--;
+            }
+        }
+        if (candidates <= 0) {
+            return -1;
+        }
+        while (true) {
+            int id = ids[rand.nextInt(size)];
+            if (!isExcluded(id, excluded, excludedCount)) {
+                return id;
+            }
+        }
+    }
+
+    private static boolean isExcluded(int id, int[] excluded, int excludedCount) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excluded[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void shuffle() {
+        for (int i = size - 1; i > 0; i--) {
+            swap(i, rand.nextInt(i + 1));
+        }
+    }
+
+    private void swap(int i, int j) {
+        if (i == j) {
+            return;
+        }
+        int tmp = ids[i];
+        set(i, ids[j]);
+        set(j, tmp);
+    }
+
+    //moves the id from position from to position to, position from becomes free
+    private void move(int from, int to) {
+        if (from != to) {
+            set(to, ids[from]);
+        }
+    }
+
+    private void set(int pos, int id) {
+        ids[pos] = id;
+        positions[slotOf(id)] = pos;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Probes waiting for an ack, indexed by their sequence number and by target.
+ * Sequence numbers are handed out by a per node 32 bit counter that starts
+ * at a per boot epoch, so a restarted node does not reuse the numbers of its
+ * previous run while the relays still remember them as seen. The probes in
+ * flight always form a short window of consecutive numbers - they are kept in
+ * a ring indexed by <code>seq & mask</code>, which grows when the window does
+ * not fit. A target can have several probes in flight (our own and
+ * the ones we relay for ping-reqs), the target index counts them.
+ */
+public class ProbeTable {
+
+    private int nextSeq;
+    private Probe[] ring;
+    private int mask;
+    private int size;
+    private final Map<Integer, Integer> byTarget;
+
+    public ProbeTable() {
+        this(1);
+    }
+
+    /**
+     * @param firstSeq the first sequence number handed out, 0 is skipped
+     */
+    public ProbeTable(int firstSeq) {
+        this.nextSeq = firstSeq == 0 ? 1 : firstSeq;
+        this.ring = new Probe[16];
+        this.mask = ring.length - 1;
+        this.size = 0;
+        this.byTarget = new HashMap<Integer, Integer>();
+    }
+
+    /**
+     * @return the next sequence number - also used for suspicions, never 0
+     */
+    public int nextSeq() {
+        int seq = nextSeq++;
+        if (nextSeq == 0) {
+            nextSeq = 1;
+        }
+        return seq;
+    }
+
+    public Probe start(NatedAddress target, long sentAt) {
+        Probe probe = new Probe(nextSeq(), target, sentAt);
+        while (ring[probe.seq & mask] != null) {
+            grow();
+        }
+        ring[probe.seq & mask] = probe;
+        size++;
+        Integer probes = byTarget.get(target.getId());
+        byTarget.put(target.getId(), probes == null ? 1 : probes + 1);
+        return probe;
+    }
+
+    /**
+     * @return the probe in flight with the given sequence number or null
+     */
+    public Probe get(int seq) {
+        Probe probe = ring[seq & mask];
+        return probe != null && probe.seq == seq ? probe : null;
+    }
+
+    public Probe remove(int seq) {
+        Probe probe = get(seq);
+        if (probe == null) {
+            return null;
+        }
+        ring[seq & mask] = null;
+        size--;
+        int id = probe.getTarget().getId();
+        int probes = byTarget.get(id);
+        if (probes == 1) {
+            byTarget.remove(id);
+        } else {
+            byTarget.put(id, probes - 1);
+        }
+        return probe;
+    }
+
+    public boolean isProbing(int targetId) {
+        return byTarget.containsKey(targetId);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return sequence numbers of all probes in flight
+     */
+    public int[] seqs() {
+        int[] seqs = new int[size];
+        int n = 0;
+        for (Probe probe : ring) {
+            if (probe != null) {
+                seqs[n++] = probe.seq;
+            }
+        }
+        return seqs;
+    }
+
+    private void grow() {
+        Probe[] old = ring;
+        int capacity = ring.length;
+        boolean fits = false;
+        while (!fits) {
+            capacity <<= 1;
+            ring = new Probe[capacity];
+            fits = true;
+            for (Probe probe : old) {
+                if (probe == null) {
+                    continue;
+                }
+                if (ring[probe.seq & (capacity - 1)] != null) {
+                    fits = false;
+                    break;
+                }
+                ring[probe.seq & (capacity - 1)] = probe;
+            }
+        }
+        mask = capacity - 1;
+    }
+
+    public static class Probe {
+
+        private final int seq;
+        private final NatedAddress target;
+        private final long sentAt;
+        private UUID timeoutId;
+        //set when we only relay the probe for a ping-req
+        private NatedAddress requester;
+        private int requesterSeq;
+
+        Probe(int seq, NatedAddress target, long sentAt) {
+            this.seq = seq;
+            this.target = target;
+            this.sentAt = sentAt;
+        }
+
+        public int getSeq() {
+            return seq;
+        }
+
+        public NatedAddress getTarget() {
+            return target;
+        }
+
+        public long getSentAt() {
+            return sentAt;
+        }
+
+        public UUID getTimeoutId() {
+            return timeoutId;
+        }
+
+        public void setTimeoutId(UUID timeoutId) {
+            this.timeoutId = timeoutId;
+        }
+
+        public void relayFor(NatedAddress requester, int requesterSeq) {
+            this.requester = requester;
+            this.requesterSeq = requesterSeq;
+        }
+
+        public boolean isRelayed() {
+            return requester != null;
+        }
+
+        public NatedAddress getRequester() {
+            return requester;
+        }
+
+        public int getRequesterSeq() {
+            return requesterSeq;
+        }
+    }
+}
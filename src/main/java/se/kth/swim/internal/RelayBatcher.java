@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per child buffers of a relay. Messages to the same nated child are held
+ * until the batch window closes or their estimated size reaches the cap, then
+ * drained together and forwarded as one bundle.
+ */
+public class RelayBatcher<M> {
+
+    private final int maxBytes;
+    private final Map<Integer, Batch<M>> batches;
+
+    public RelayBatcher(int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("batch size cap should be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.batches = new HashMap<Integer, Batch<M>>();
+    }
+
+    /**
+     * @return true if the message opened a new batch - the caller starts the
+     * batch window
+     */
+    public boolean add(int child, M msg, int bytes) {
+        Batch<M> batch = batches.get(child);
+        boolean opened = false;
+        if (batch == null) {
+            batch = new Batch<M>();
+            batches.put(child, batch);
+            opened = true;
+        }
+        batch.msgs.add(msg);
+        batch.bytes += bytes;
+        return opened;
+    }
+
+    public boolean isFull(int child) {
+        Batch<M> batch = batches.get(child);
+        return batch != null && batch.bytes >= maxBytes;
+    }
+
+    /**
+     * @return the buffered messages of the child in arrival order, empty if none
+     */
+    public List<M> drain(int child) {
+        Batch<M> batch = batches.remove(child);
+        if (batch == null) {
+            return Collections.emptyList();
+        }
+        return batch.msgs;
+    }
+
+    public int size() {
+        return batches.size();
+    }
+
+    private static class Batch<M> {
+
+        private final List<M> msgs = new ArrayList<M>();
+        private int bytes;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import se.kth.swim.msg.RelayLoad;
+
+/**
+ * Nated children an open node relays for, with the message and byte rates it
+ * relays to each. A child registers through its nat pings and is admitted
+ * while the capacity is not reached; it is forgotten once it stops pinging.
+ * The registry is an open addressing (linear probing) table keyed by the
+ * primitive child id with the per child state in parallel arrays, so checking
+ * whether a relayed message is for a child is one id lookup. Removed children
+ * are backward shifted out, so no tombstones are left behind. Rates are
+ * measured per window and smoothed with an exponentially weighted moving
+ * average. A child whose message rate is over the per child limit is
+ * throttled - its messages are not relayed, nor counted, until its rate
+ * decays below the limit - so one noisy child does not use up the relay.
+ */
+public class RelayChildren {
+
+    private static final double RATE_GAIN = 0.25;
+
+    private final int capacity;
+    private final long expiry;
+    private final double maxChildRate;
+    private int[] keys;
+    private boolean[] used;
+    private long[] lastSeen;
+    private int[] messages;
+    private long[] bytes;
+    private double[] messageRates;
+    private double[] byteRates;
+    private int mask;
+    private int size;
+    private long windowStart;
+    private double messageRate;
+    private double byteRate;
+
+    /**
+     * @param capacity most children, 0 for no limit
+     * @param expiry a child that did not ping for this long is dropped
+     * @param maxChildRate most messages per second relayed to one child, 0 for
+     * no limit
+     */
+    public RelayChildren(int capacity, long expiry, double maxChildRate, long now) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("relay capacity should not be negative");
+        }
+        if (maxChildRate < 0) {
+            throw new IllegalArgumentException("child message rate should not be negative");
+        }
+        this.capacity = capacity;
+        this.expiry = expiry;
+        this.maxChildRate = maxChildRate;
+        int tableSize = 8;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        allocate(tableSize);
+        this.size = 0;
+        this.windowStart = now;
+        this.messageRate = 0;
+        this.byteRate = 0;
+    }
+
+    private void allocate(int tableSize) {
+        keys = new int[tableSize];
+        used = new boolean[tableSize];
+        lastSeen = new long[tableSize];
+        messages = new int[tableSize];
+        bytes = new long[tableSize];
+        messageRates = new double[tableSize];
+        byteRates = new double[tableSize];
+        mask = tableSize - 1;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(int id) {
+        int slot = hash(id) & mask;
+        while (used[slot]) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * refreshes a known child or registers a new one if there is spare capacity
+     * @return false if the child was refused
+     */
+    public boolean admit(int id, long now) {
+        int slot = indexOf(id);
+        if (slot != -1) {
+            lastSeen[slot] = now;
+            return true;
+        }
+        if (!hasSpare()) {
+            return false;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        slot = hash(id) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        copy(slot, id, now, 0, 0, 0, 0);
+        size++;
+        return true;
+    }
+
+    private void rehash(int tableSize) {
+        int[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        long[] oldLastSeen = lastSeen;
+        int[] oldMessages = messages;
+        long[] oldBytes = bytes;
+        double[] oldMessageRates = messageRates;
+        double[] oldByteRates = byteRates;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            copy(slot, oldKeys[i], oldLastSeen[i], oldMessages[i], oldBytes[i], oldMessageRates[i], oldByteRates[i]);
+        }
+    }
+
+    private void copy(int slot, int key, long seen, int msgs, long byteCount, double msgRate, double bRate) {
+        used[slot] = true;
+        keys[slot] = key;
+        lastSeen[slot] = seen;
+        messages[slot] = msgs;
+        bytes[slot] = byteCount;
+        messageRates[slot] = msgRate;
+        byteRates[slot] = bRate;
+    }
+
+    public void remove(int id) {
+        int slot = indexOf(id);
+        if (slot == -1) {
+            return;
+        }
+        used[slot] = false;
+        clear(slot);
+        size--;
+        //backward shift - move up the entries of the probe run that would no
+        //longer be found past the freed slot
+        int next = (slot + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                copy(slot, keys[next], lastSeen[next], messages[next], bytes[next], messageRates[next], byteRates[next]);
+                used[next] = false;
+                clear(next);
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    //a freed slot keeps no counters for the next child hashed to it
+    private void clear(int slot) {
+        messages[slot] = 0;
+        bytes[slot] = 0;
+        messageRates[slot] = 0;
+        byteRates[slot] = 0;
+    }
+
+    /**
+     * refreshes a known child without admitting new ones - any message from a
+     * child shows it is still behind this relay
+     */
+    public void touch(int id, long now) {
+        int slot = indexOf(id);
+        if (slot != -1) {
+            lastSeen[slot] = now;
+        }
+    }
+
+    public boolean isChild(int id) {
+        return indexOf(id) != -1;
+    }
+
+    /**
+     * @return true if the id is a child over the per child message rate
+     */
+    public boolean isThrottled(int id) {
+        int slot = indexOf(id);
+        return slot != -1 && throttled(slot);
+    }
+
+    private boolean throttled(int slot) {
+        return maxChildRate > 0 && messageRates[slot] > maxChildRate;
+    }
+
+    /**
+     * accounts one message relayed to a child
+     * @return false if the id is not a child or the child is throttled - the
+     * message should not be relayed
+     */
+    public boolean relayed(int id, int byteCount) {
+        int slot = indexOf(id);
+        if (slot == -1 || throttled(slot)) {
+            return false;
+        }
+        messages[slot]++;
+        bytes[slot] += byteCount;
+        return true;
+    }
+
+    /**
+     * closes the current window - updates the rates and drops the children
+     * that stopped pinging
+     */
+    public void roll(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed <= 0) {
+            return;
+        }
+        int[] expired = new int[size];
+        int expiredCount = 0;
+        double totalMessages = 0;
+        double totalBytes = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (!used[slot]) {
+                continue;
+            }
+            if (now - lastSeen[slot] > expiry) {
+                expired[expiredCount++] = keys[slot];
+                continue;
+            }
+            messageRates[slot] = smooth(messageRates[slot], messages[slot] * 1000.0 / elapsed);
+            byteRates[slot] = smooth(byteRates[slot], bytes[slot] * 1000.0 / elapsed);
+            messages[slot] = 0;
+            bytes[slot] = 0;
+            totalMessages += messageRates[slot];
+            totalBytes += byteRates[slot];
+        }
+        for (int i = 0; i < expiredCount; i++) {
+            remove(expired[i]);
+        }
+        messageRate = totalMessages;
+        byteRate = totalBytes;
+        windowStart = now;
+    }
+
+    private static double smooth(double rate, double sample) {
+        return rate + RATE_GAIN * (sample - rate);
+    }
+
+    public boolean hasSpare() {
+        return capacity == 0 || size < capacity;
+    }
+
+    /**
+     * @return smoothed messages per second relayed to the child, -1 if unknown
+     */
+    public double messageRate(int id) {
+        int slot = indexOf(id);
+        return slot == -1 ? -1 : messageRates[slot];
+    }
+
+    /**
+     * @return smoothed bytes per second relayed to the child, -1 if unknown
+     */
+    public double byteRate(int id) {
+        int slot = indexOf(id);
+        return slot == -1 ? -1 : byteRates[slot];
+    }
+
+    public RelayLoad load() {
+        return new RelayLoad(size, capacity, messageRate, byteRate);
+    }
+
+    public int size() {
+        return size;
+    }
+}
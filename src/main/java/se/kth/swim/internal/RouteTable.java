@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.kth.swim.msg.RelayRoute;
+
+/**
+ * Newest known relay route of every nated node and the route changes still to
+ * be gossiped. A route only replaces an older one - a lower incarnation, or a
+ * lower version of the same incarnation - so routes converge to the latest
+ * parents of each node in whatever order the gossip arrives. Like
+ * membership changes, a route change is piggybacked a bounded number of
+ * times; the pending ones are served round robin so every change goes out.
+ */
+public class RouteTable {
+
+    private final Map<Integer, RelayRoute> routes;
+    //route id to remaining sends, in round robin order
+    private final LinkedHashMap<Integer, Integer> pending;
+
+    public RouteTable() {
+        this.routes = new HashMap<Integer, RelayRoute>();
+        this.pending = new LinkedHashMap<Integer, Integer>();
+    }
+
+    /**
+     * keeps the route if it is newer than the known one and queues it for
+     * <code>times</code> disseminations
+     * @return true if the route was newer
+     */
+    public boolean update(RelayRoute route, int times) {
+        if (!route.supersedes(routes.get(route.getId()))) {
+            return false;
+        }
+        routes.put(route.getId(), route);
+        pending.remove(route.getId());
+        if (times > 0) {
+            pending.put(route.getId(), times);
+        }
+        return true;
+    }
+
+    /**
+     * @return the newest route of the node or null if none is known
+     */
+    public RelayRoute get(int id) {
+        return routes.get(id);
+    }
+
+    /**
+     * @return at most <code>max</code> route changes to piggyback, the routes
+     * disseminated enough are dropped from the queue
+     */
+    public RelayRoute[] select(int max) {
+        if (pending.isEmpty()) {
+            return new RelayRoute[0];
+        }
+        List<Map.Entry<Integer, Integer>> selected = new ArrayList<Map.Entry<Integer, Integer>>();
+        Iterator<Map.Entry<Integer, Integer>> it = pending.entrySet().iterator();
+        while (it.hasNext() && selected.size() < max) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            selected.add(new AbstractMap.SimpleEntry<Integer, Integer>(entry));
+            it.remove();
+        }
+        RelayRoute[] batch = new RelayRoute[selected.size()];
+        for (int i = 0; i < batch.length; i++) {
+            Map.Entry<Integer, Integer> entry = selected.get(i);
+            batch[i] = routes.get(entry.getKey());
+            //the ones still to send go to the back, after the others
+            if (entry.getValue() > 1) {
+                pending.put(entry.getKey(), entry.getValue() - 1);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * forgets the route of a node that rejoined - it starts versioning over
+     */
+    public void remove(int id) {
+        routes.remove(id);
+        pending.remove(id);
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    public int size() {
+        return routes.size();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Smoothed round trip time and variance per peer, Jacobson/Karels style as
+ * in TCP (RFC 6298): srtt += (r - srtt) / 8, rttvar += (|r - srtt| - rttvar) / 4
+ * and a timeout of srtt + 4 * rttvar. A cluster wide estimate fed by every
+ * sample is the fallback for peers that were never measured, and before the
+ * first sample the initial timeout is used. Timeouts are kept within
+ * [minTimeout, maxTimeout].
+ */
+public class RttEstimator {
+
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final int K = 4;
+
+    private final long minTimeout;
+    private final long maxTimeout;
+    private final long initialTimeout;
+    private final Map<Integer, Estimate> peers;
+    private final Estimate cluster;
+
+    public RttEstimator(long minTimeout, long maxTimeout, long initialTimeout) {
+        if (minTimeout <= 0 || maxTimeout < minTimeout) {
+            throw new IllegalArgumentException("bad timeout bounds [" + minTimeout + ", " + maxTimeout + "]");
+        }
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.initialTimeout = initialTimeout;
+        this.peers = new HashMap<Integer, Estimate>();
+        this.cluster = new Estimate();
+    }
+
+    public void sample(int id, long rtt) {
+        if (rtt < 0) {
+            return;
+        }
+        Estimate estimate = peers.get(id);
+        if (estimate == null) {
+            estimate = new Estimate();
+            peers.put(id, estimate);
+        }
+        estimate.update(rtt);
+        cluster.update(rtt);
+    }
+
+    /**
+     * @return ack timeout for the peer, from its own estimate if it was ever
+     * measured, otherwise from the cluster wide one
+     */
+    public long timeout(int id) {
+        Estimate estimate = peers.get(id);
+        if (estimate == null) {
+            estimate = cluster;
+        }
+        if (estimate.samples == 0) {
+            return clamp(initialTimeout);
+        }
+        return clamp((long) Math.ceil(estimate.srtt + K * estimate.rttvar));
+    }
+
+    private long clamp(long timeout) {
+        return Math.max(minTimeout, Math.min(maxTimeout, timeout));
+    }
+
+    /**
+     * @return smoothed rtt of the peer or -1 if it was never measured
+     */
+    public long smoothedRtt(int id) {
+        Estimate estimate = peers.get(id);
+        return estimate == null ? -1 : Math.round(estimate.srtt);
+    }
+
+    /**
+     * @return cluster wide smoothed rtt or -1 before the first sample
+     */
+    public long clusterSmoothedRtt() {
+        return cluster.samples == 0 ? -1 : Math.round(cluster.srtt);
+    }
+
+    /**
+     * @return cluster wide rtt variance or -1 before the first sample
+     */
+    public long clusterRttVariance() {
+        return cluster.samples == 0 ? -1 : Math.round(cluster.rttvar);
+    }
+
+    private static class Estimate {
+
+        private double srtt;
+        private double rttvar;
+        private long samples;
+
+        void update(long rtt) {
+            if (samples == 0) {
+                srtt = rtt;
+                rttvar = rtt / 2.0;
+            } else {
+                rttvar += BETA * (Math.abs(srtt - rtt) - rttvar);
+                srtt += ALPHA * (rtt - srtt);
+            }
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A suspicion raised by this node about one member, from the failed direct
+ * probe until the member is declared failed or answers through a ping-req
+ * relay. As in Lifeguard the timeout starts at <code>max</code> and shrinks
+ * towards <code>min</code> with the log of the number of independent
+ * confirmations (other members that raised the same suspicion), reaching
+ * <code>min</code> after <code>expected</code> of them. Confirmations are
+ * counted by the id of the member that raised the suspicion, not by who
+ * gossiped it, so relayed and echoed suspicions do not count twice.
+ */
+public class Suspicion {
+
+    private final int target;
+    private final int suspector;
+    private final int incarnation;
+    private final long start;
+    private final long min;
+    private final long max;
+    private final int expected;
+    private final Set<Integer> confirmations;
+    //ping-req relays and which of them nacked or forwarded an ack
+    private final int[] relays;
+    private int relayCount;
+    private final Set<Integer> answered;
+
+    /**
+     * @param suspector this node, which raised the suspicion
+     */
+    public Suspicion(int target, int suspector, int incarnation, long start, long min, long max, int expected) {
+        this.target = target;
+        this.suspector = suspector;
+        this.incarnation = incarnation;
+        this.start = start;
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.expected = expected;
+        this.confirmations = new HashSet<Integer>();
+        this.relays = new int[expected];
+        this.relayCount = 0;
+        this.answered = new HashSet<Integer>();
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public int getIncarnation() {
+        return incarnation;
+    }
+
+    /**
+     * @param from the member that raised the gossiped suspicion
+     * @return true if this is a new confirmation and the timeout got shorter
+     */
+    public boolean confirm(int from) {
+        if (from == target || from == suspector || from == -1
+                || confirmations.size() >= expected || !confirmations.add(from)) {
+            return false;
+        }
+        return max > min;
+    }
+
+    public void addRelay(int id) {
+        if (relayCount < relays.length) {
+            relays[relayCount++] = id;
+        }
+    }
+
+    public void answered(int relay) {
+        answered.add(relay);
+    }
+
+    /**
+     * @return relays that neither nacked nor forwarded an ack
+     */
+    public int missedNacks() {
+        int missed = 0;
+        for (int i = 0; i < relayCount; i++) {
+            if (!answered.contains(relays[i])) {
+                missed++;
+            }
+        }
+        return missed;
+    }
+
+    public long timeout() {
+        if (expected <= 0 || confirmations.isEmpty()) {
+            return max;
+        }
+        double frac = Math.log(confirmations.size() + 1) / Math.log(expected + 1);
+        long timeout = max - (long) Math.floor(frac * (max - min));
+        return Math.max(min, timeout);
+    }
+
+    public long remaining(long now) {
+        return Math.max(0, start + timeout() - now);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hashed timing wheel (Varghese and Lauck, scheme 6). Time is in milliseconds
+ * and cut in ticks of <code>tickLength</code>; a deadline is rounded up to a
+ * tick boundary and lives in the bucket of its tick modulo the wheel size.
+ * Each bucket is a doubly linked list threaded through parallel arrays, so
+ * scheduling and cancelling are O(1) and do not allocate once the arrays have
+ * grown. Deadlines further away than one turn of the wheel just stay in their
+ * bucket until their tick comes round. Handles carry a generation, so
+ * cancelling an expired or reused timer is a harmless no-op.
+ * <p>
+ * The wheel does not tick by itself: the owner calls {@link #advance} when it
+ * wakes up and sleeps until {@link #nextDeadline()}, so an idle wheel costs
+ * nothing.
+ */
+public class TimerWheel<T> {
+
+    private static final int NONE = -1;
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    private final long tickLength;
+    private final int mask;
+    private final int[] heads;
+    private int[] next;
+    private int[] prev;
+    private int[] generations;
+    //in ticks
+    private long[] deadlines;
+    private Object[] payloads;
+    private int free;
+    private int size;
+    //last tick the wheel was advanced to
+    private long now;
+
+    public TimerWheel(int wheelSize, long tickLength) {
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheel size should be a power of two");
+        }
+        if (tickLength <= 0) {
+            throw new IllegalArgumentException("tick length should be positive");
+        }
+        this.tickLength = tickLength;
+        this.mask = wheelSize - 1;
+        this.heads = new int[wheelSize];
+        Arrays.fill(heads, NONE);
+        this.free = NONE;
+        this.size = 0;
+        this.now = 0;
+        grow(16);
+    }
+
+    /**
+     * @param time current time, the deadline is <code>time + delay</code>
+     * rounded up to the next tick and always after the current tick, so a
+     * timer never expires early
+     * @return handle for {@link #cancel(int)}
+     */
+    public int schedule(long time, long delay, T payload) {
+        if (payload == null) {
+            throw new IllegalArgumentException("timer payload should not be null");
+        }
+        if (free == NONE) {
+            if (next.length > INDEX_MASK) {
+                throw new IllegalStateException("too many pending timers");
+            }
+            grow(next.length << 1);
+        }
+        int node = free;
+        free = next[node];
+        long deadline = (time + Math.max(0, delay) + tickLength - 1) / tickLength;
+        deadlines[node] = Math.max(deadline, now + 1);
+        payloads[node] = payload;
+        link(bucket(deadlines[node]), node);
+        size++;
+        return (generations[node] << INDEX_BITS) | node;
+    }
+
+    /**
+     * @return false if the timer already expired or was cancelled
+     */
+    public boolean cancel(int handle) {
+        int node = pending(handle);
+        if (node == NONE) {
+            return false;
+        }
+        unlink(bucket(deadlines[node]), node);
+        release(node);
+        return true;
+    }
+
+    /**
+     * @return time the timer expires at, -1 if it already expired or was
+     * cancelled
+     */
+    public long deadline(int handle) {
+        int node = pending(handle);
+        return node == NONE ? -1 : deadlines[node] * tickLength;
+    }
+
+    /**
+     * moves the wheel forward to the tick of <code>time</code> and adds the
+     * payloads that expired to <code>expired</code>, in no particular order
+     */
+    public void advance(long time, List<T> expired) {
+        long target = time / tickLength;
+        if (target <= now) {
+            return;
+        }
+        if (target - now > mask) {
+            //a whole turn or more - every bucket is due, visit each once
+            for (int bucket = 0; bucket < heads.length; bucket++) {
+                expire(bucket, target, expired);
+            }
+            now = target;
+            return;
+        }
+        while (now < target) {
+            now++;
+            expire(bucket(now), now, expired);
+        }
+    }
+
+    /**
+     * @return earliest time a pending timer expires at, -1 if there is none
+     */
+    public long nextDeadline() {
+        if (size == 0) {
+            return -1;
+        }
+        //the first tick of the coming turn that has a timer due in this turn
+        for (long tick = now + 1; tick <= now + heads.length; tick++) {
+            for (int node = heads[bucket(tick)]; node != NONE; node = next[node]) {
+                if (deadlines[node] == tick) {
+                    return tick * tickLength;
+                }
+            }
+        }
+        //everything is further than a turn away
+        long earliest = Long.MAX_VALUE;
+        for (int bucket = 0; bucket < heads.length; bucket++) {
+            for (int node = heads[bucket]; node != NONE; node = next[node]) {
+                earliest = Math.min(earliest, deadlines[node]);
+            }
+        }
+        return earliest * tickLength;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expire(int bucket, long tick, List<T> expired) {
+        int node = heads[bucket];
+        while (node != NONE) {
+            int following = next[node];
+            if (deadlines[node] <= tick) {
+                expired.add((T) payloads[node]);
+                unlink(bucket, node);
+                release(node);
+            }
+            node = following;
+        }
+    }
+
+    //node of a pending timer, NONE if the handle is stale
+    private int pending(int handle) {
+        int node = handle & INDEX_MASK;
+        if (node >= next.length || payloads[node] == null || generations[node] != (handle >>> INDEX_BITS)) {
+            return NONE;
+        }
+        return node;
+    }
+
+    private int bucket(long tick) {
+        return (int) (tick & mask);
+    }
+
+    private void link(int bucket, int node) {
+        int head = heads[bucket];
+        prev[node] = NONE;
+        next[node] = head;
+        if (head != NONE) {
+            prev[head] = node;
+        }
+        heads[bucket] = node;
+    }
+
+    private void unlink(int bucket, int node) {
+        if (prev[node] == NONE) {
+            heads[bucket] = next[node];
+        } else {
+            next[prev[node]] = next[node];
+        }
+        if (next[node] != NONE) {
+            prev[next[node]] = prev[node];
+        }
+    }
+
+    private void release(int node) {
+        payloads[node] = null;
+        generations[node] = (generations[node] + 1) & GENERATION_MASK;
+        next[node] = free;
+        free = node;
+        size--;
+    }
+
+    private void grow(int capacity) {
+        int old = next == null ? 0 : next.length;
+        next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+        prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+        generations = generations == null ? new int[capacity] : Arrays.copyOf(generations, capacity);
+        deadlines = deadlines == null ? new long[capacity] : Arrays.copyOf(deadlines, capacity);
+        payloads = payloads == null ? new Object[capacity] : Arrays.copyOf(payloads, capacity);
+        //new nodes go to the free list
+        for (int i = capacity - 1; i >= old; i--) {
+            next[i] = free;
+            free = i;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import se.kth.swim.msg.FDMessage;
+import se.kth.swim.msg.PiggybackBatch;
+import se.kth.swim.msg.Ping;
+import se.kth.swim.msg.net.NetMsg;
+
+/**
+ * Estimated wire size of a message. The simulator hands java objects around
+ * without serializing them, so relays account their traffic by this estimate:
+ * a fixed header (source, destination and relay addresses) plus the sequence
+ * number and the piggybacked membership updates and relay routes of the
+ * failure detector messages.
+ */
+public final class WireSize {
+
+    //ip, port and id
+    public static final int ADDRESS_BYTES = 10;
+    public static final int HEADER_BYTES = 3 * ADDRESS_BYTES + 2;
+    //address, status and incarnation
+    public static final int UPDATE_BYTES = ADDRESS_BYTES + 1 + 4;
+    public static final int SN_BYTES = 4;
+
+    private WireSize() {
+    }
+
+    public static int estimate(NetMsg<?> msg) {
+        return HEADER_BYTES + content(msg.getContent());
+    }
+
+    private static int content(Object content) {
+        if (content instanceof FDMessage) {
+            return SN_BYTES + updates(((FDMessage) content).getNodes());
+        }
+        if (content instanceof Ping) {
+            Ping ping = (Ping) content;
+            return 2 * SN_BYTES + (ping.getForwardNode() == null ? 0 : ADDRESS_BYTES) + updates(ping.getNodes());
+        }
+        return SN_BYTES;
+    }
+
+    private static int updates(PiggybackBatch batch) {
+        if (batch == null) {
+            return 0;
+        }
+        int bytes = batch.size() * UPDATE_BYTES;
+        for (int i = 0; i < batch.routeCount(); i++) {
+            //id, version and the parent ids
+            bytes += 8 + 4 * batch.getRoute(i).parentCount();
+        }
+        return bytes;
+    }
+}
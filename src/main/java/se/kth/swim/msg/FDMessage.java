@@ -1,36 +1,33 @@
 package se.kth.swim.msg;
 
-import java.util.Map;
-import java.util.UUID;
+public class FDMessage implements Sequenced {
 
-public class FDMessage {
-
-	private UUID sn;
-	private Map<Integer, PiggyBackElement> nodes;
+	private int sn;
+	private PiggybackBatch nodes;
 	
 	public FDMessage(){
 		
 	}
 
-	public FDMessage(UUID sn, Map<Integer, PiggyBackElement> nodes) {
+	public FDMessage(int sn, PiggybackBatch nodes) {
 		super();
 		this.sn = sn;
 		this.nodes = nodes;
 	}
 
-	public UUID getSn() {
+	public int getSn() {
 		return sn;
 	}
 
-	public void setId(UUID sn) {
+	public void setId(int sn) {
 		this.sn = sn;
 	}
 
-	public Map<Integer, PiggyBackElement> getNodes() {
+	public PiggybackBatch getNodes() {
 		return nodes;
 	}
 
-	public void setNodes(Map<Integer, PiggyBackElement> nodes) {
+	public void setNodes(PiggybackBatch nodes) {
 		this.nodes = nodes;
 	}
 
@@ -1,35 +1,32 @@
 package se.kth.swim.msg;
 
-import java.util.Map;
-import java.util.UUID;
-
 public class FinalPong extends Pong{
 
-	public FinalPong(UUID sn, Map<Integer, PiggyBackElement> nodes) {
+	public FinalPong(int sn, PiggybackBatch nodes) {
 		super(sn, nodes);
 		// TODO Auto-generated constructor stub
 	}
 
 	@Override
-	public UUID getSn() {
+	public int getSn() {
 		// TODO Auto-generated method stub
 		return super.getSn();
 	}
 
 	@Override
-	public void setId(UUID sn) {
+	public void setId(int sn) {
 		// TODO Auto-generated method stub
 		super.setId(sn);
 	}
 
 	@Override
-	public Map<Integer, PiggyBackElement> getNodes() {
+	public PiggybackBatch getNodes() {
 		// TODO Auto-generated method stub
 		return super.getNodes();
 	}
 
 	@Override
-	public void setNodes(Map<Integer, PiggyBackElement> nodes) {
+	public void setNodes(PiggybackBatch nodes) {
 		// TODO Auto-generated method stub
 		super.setNodes(nodes);
 	}
@@ -1,17 +1,14 @@
 package se.kth.swim.msg;
 
-import java.util.Map;
-import java.util.UUID;
-
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 
 public class IndirectPong extends Pong{
 	
 	private NatedAddress forwardNode;
-	private UUID currentWaitingId;
+	private int currentWaitingId;
 
-	public IndirectPong(UUID sn, Map<Integer, PiggyBackElement> nodes,NatedAddress forwardNode,UUID currentWaitingId) {
+	public IndirectPong(int sn, PiggybackBatch nodes,NatedAddress forwardNode,int currentWaitingId) {
 		super(sn, nodes);
 		this.forwardNode=forwardNode;
 		this.currentWaitingId=currentWaitingId;
@@ -19,21 +16,21 @@ public class IndirectPong extends Pong{
 	}
 
 	@Override
-	public UUID getSn() {
+	public int getSn() {
 		// TODO Auto-generated method stub
 		return super.getSn();
 	}
 
-	public UUID getCurrentWaitingId() {
+	public int getCurrentWaitingId() {
 		return currentWaitingId;
 	}
 
-	public void setCurrentWaitingId(UUID currentWaitingId) {
+	public void setCurrentWaitingId(int currentWaitingId) {
 		this.currentWaitingId = currentWaitingId;
 	}
 
 	@Override
-	public void setId(UUID sn) {
+	public void setId(int sn) {
 		// TODO Auto-generated method stub
 		super.setId(sn);
 	}
@@ -47,13 +44,13 @@ public class IndirectPong extends Pong{
 	}
 
 	@Override
-	public Map<Integer, PiggyBackElement> getNodes() {
+	public PiggybackBatch getNodes() {
 		// TODO Auto-generated method stub
 		return super.getNodes();
 	}
 
 	@Override
-	public void setNodes(Map<Integer, PiggyBackElement> nodes) {
+	public void setNodes(PiggybackBatch nodes) {
 		// TODO Auto-generated method stub
 		super.setNodes(nodes);
 	}
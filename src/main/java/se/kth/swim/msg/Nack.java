@@ -0,0 +1,13 @@
+package se.kth.swim.msg;
+
+/**
+ * Sent by a ping-req relay whose indirect ping got no answer, so the
+ * requester can tell a dead target from a slow relay (or a slow self).
+ */
+public class Nack extends Pong{
+
+	public Nack(int sn, PiggybackBatch nodes) {
+		super(sn, nodes);
+	}
+
+}
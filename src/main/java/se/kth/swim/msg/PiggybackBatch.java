@@ -0,0 +1,108 @@
+package se.kth.swim.msg;
+
+import java.util.Arrays;
+
+import se.kth.swim.msg.net.NodeStatus;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Immutable snapshot of the membership updates piggybacked on one message.
+ * It is taken once per send, so it can be shared by several messages (the k
+ * ping-reqs) and by the receivers without anyone seeing later changes.
+ */
+public final class PiggybackBatch {
+
+	private static final RelayRoute[] NO_ROUTES = new RelayRoute[0];
+	public static final PiggybackBatch EMPTY = new PiggybackBatch(new NatedAddress[0], new NodeStatus[0], new int[0], new int[0], NO_ROUTES);
+
+	private final NatedAddress[] addresses;
+	private final NodeStatus[] statuses;
+	private final int[] incarnations;
+	//the member that raised a SUSPECTED entry, -1 for the other statuses
+	private final int[] suspectors;
+	//relay route changes of nated nodes, gossiped next to the membership updates
+	private final RelayRoute[] routes;
+
+	private PiggybackBatch(NatedAddress[] addresses, NodeStatus[] statuses, int[] incarnations, int[] suspectors, RelayRoute[] routes) {
+		this.addresses = addresses;
+		this.statuses = statuses;
+		this.incarnations = incarnations;
+		this.suspectors = suspectors;
+		this.routes = routes;
+	}
+
+	/**
+	 * copies the first <code>size</code> entries of the given arrays
+	 */
+	public static PiggybackBatch copyOf(NatedAddress[] addresses, NodeStatus[] statuses, int[] incarnations, int[] suspectors, int size) {
+		return copyOf(addresses, statuses, incarnations, suspectors, size, NO_ROUTES);
+	}
+
+	/**
+	 * copies the first <code>size</code> entries of the given arrays, the
+	 * routes are taken as they are
+	 */
+	public static PiggybackBatch copyOf(NatedAddress[] addresses, NodeStatus[] statuses, int[] incarnations, int[] suspectors, int size, RelayRoute[] routes) {
+		if (size == 0 && routes.length == 0) {
+			return EMPTY;
+		}
+		return new PiggybackBatch(Arrays.copyOf(addresses, size), Arrays.copyOf(statuses, size), Arrays.copyOf(incarnations, size),
+				Arrays.copyOf(suspectors, size), routes);
+	}
+
+	public int size() {
+		return addresses.length;
+	}
+
+	public boolean isEmpty() {
+		return addresses.length == 0 && routes.length == 0;
+	}
+
+	public int getId(int i) {
+		return addresses[i].getId();
+	}
+
+	public NatedAddress getAddress(int i) {
+		return addresses[i];
+	}
+
+	public NodeStatus getStatus(int i) {
+		return statuses[i];
+	}
+
+	public int getIncarnation(int i) {
+		return incarnations[i];
+	}
+
+	/**
+	 * @return id of the member that raised the suspicion, -1 if the entry is
+	 * not a suspicion
+	 */
+	public int getSuspector(int i) {
+		return suspectors[i];
+	}
+
+	public int routeCount() {
+		return routes.length;
+	}
+
+	public RelayRoute getRoute(int i) {
+		return routes[i];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < addresses.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(addresses[i].getId()).append(":").append(statuses[i]).append(":").append(incarnations[i]);
+		}
+		sb.append("]");
+		if (routes.length > 0) {
+			sb.append(" routes:").append(Arrays.toString(routes));
+		}
+		return sb.toString();
+	}
+}
@@ -19,26 +19,23 @@
 
 package se.kth.swim.msg;
 
-import java.util.Map;
-import java.util.UUID;
-
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 /**
  * @author Alex Ormenisan <aaor@sics.se>
  */
-public class Ping {
+public class Ping implements Sequenced {
 	
-	private Map<Integer,PiggyBackElement> nodes;
-	private UUID sn;
+	private PiggybackBatch nodes;
+	private int sn;
 
 	private NatedAddress forwardNode;
-	private UUID initialUUID;
+	private int initialSn;
 
-	public Ping(UUID sn, Map<Integer, PiggyBackElement> nodes,NatedAddress forwardNode,UUID initialUUID) {
+	public Ping(int sn, PiggybackBatch nodes,NatedAddress forwardNode,int initialSn) {
 		this.nodes=nodes;
 		this.forwardNode=forwardNode;
-		this.initialUUID=initialUUID;
+		this.initialSn=initialSn;
 		this.sn=sn;
 		// TODO Auto-generated constructor stub
 	}
@@ -51,36 +48,36 @@ public class Ping {
 
 
 
-	public Map<Integer, PiggyBackElement> getNodes() {
+	public PiggybackBatch getNodes() {
 		return this.nodes;
 	}
 
 
 
-	public void setNodes(Map<Integer, PiggyBackElement> nodes) {
+	public void setNodes(PiggybackBatch nodes) {
 		this.nodes = nodes;
 	}
 
 
 
-	public UUID getSn() {
+	public int getSn() {
 		return sn;
 	}
 
 
 
-	public void setSn(UUID sn) {
+	public void setSn(int sn) {
 		this.sn = sn;
 	}
 
 
 
-	public UUID getInitialUUID() {
-		return initialUUID;
+	public int getInitialSn() {
+		return initialSn;
 	}
 
-	public void setInitialUUID(UUID initialUUID) {
-		this.initialUUID = initialUUID;
+	public void setInitialSn(int initialSn) {
+		this.initialSn = initialSn;
 	}
 
 	public NatedAddress getForwardNode() {
@@ -96,7 +93,7 @@ public class Ping {
 	@Override
 	public String toString() {
 		// TODO Auto-generated method stub
-		return this.nodes.toString()+this.nodes.keySet().toString();
+		return this.nodes.toString();
 	}
 	
 }
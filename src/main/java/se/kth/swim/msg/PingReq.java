@@ -1,8 +1,5 @@
 package se.kth.swim.msg;
 
-import java.util.Map;
-import java.util.UUID;
-
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 public class PingReq extends FDMessage{
@@ -14,7 +11,7 @@ public class PingReq extends FDMessage{
 		// TODO Auto-generated constructor stub
 	}
 
-	public PingReq(UUID sn, Map<Integer, PiggyBackElement> nodes,NatedAddress nodeToBePinged) {
+	public PingReq(int sn, PiggybackBatch nodes,NatedAddress nodeToBePinged) {
 		super(sn, nodes);
 		this.nodeToBePinged=nodeToBePinged;
 		// TODO Auto-generated constructor stub
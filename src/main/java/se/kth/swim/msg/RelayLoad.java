@@ -0,0 +1,64 @@
+package se.kth.swim.msg;
+
+/**
+ * Relay load an open node advertises as its croupier self view and in its nat
+ * pongs - nated nodes pick the parents with spare capacity.
+ */
+public final class RelayLoad {
+
+	private final int children;
+	private final int capacity;
+	private final double messageRate;
+	private final double byteRate;
+
+	public RelayLoad(int children, int capacity, double messageRate, double byteRate) {
+		this.children = children;
+		this.capacity = capacity;
+		this.messageRate = messageRate;
+		this.byteRate = byteRate;
+	}
+
+	public int getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return most children relayed for, 0 for no limit
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return relayed messages per second
+	 */
+	public double getMessageRate() {
+		return messageRate;
+	}
+
+	/**
+	 * @return estimated relayed bytes per second
+	 */
+	public double getByteRate() {
+		return byteRate;
+	}
+
+	public boolean hasSpare() {
+		return capacity == 0 || children < capacity;
+	}
+
+	/**
+	 * @return fraction of the capacity in use, between 0 and 1
+	 */
+	public double load() {
+		if (capacity == 0) {
+			return 0;
+		}
+		return Math.min(1.0, (double) children / capacity);
+	}
+
+	@Override
+	public String toString() {
+		return "RelayLoad[" + children + "/" + capacity + ", " + Math.round(messageRate) + " msg/s, " + Math.round(byteRate) + " B/s]";
+	}
+}
@@ -0,0 +1,68 @@
+package se.kth.swim.msg;
+
+import java.util.Arrays;
+
+/**
+ * Relay route of a nated node - the ids of its parents - versioned by the node
+ * itself, which bumps the version on every parent change and starts over at
+ * every new incarnation. Routes are ordered by incarnation first, then by
+ * version, so a route issued after a refutation or a rejoin replaces the ones
+ * of the earlier life of the node. A parent change is gossiped as this small
+ * delta instead of a whole new address.
+ */
+public final class RelayRoute {
+
+	private final int id;
+	private final int incarnation;
+	private final int version;
+	//sorted
+	private final int[] parents;
+
+	public RelayRoute(int id, int incarnation, int version, int[] parents) {
+		this.id = id;
+		this.incarnation = incarnation;
+		this.version = version;
+		this.parents = parents.clone();
+		Arrays.sort(this.parents);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getIncarnation() {
+		return incarnation;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public int parentCount() {
+		return parents.length;
+	}
+
+	public int getParent(int i) {
+		return parents[i];
+	}
+
+	public boolean hasParent(int parentId) {
+		return Arrays.binarySearch(parents, parentId) >= 0;
+	}
+
+	/**
+	 * @return true if this route replaces the given one - a higher
+	 * incarnation, or a higher version of the same incarnation
+	 */
+	public boolean supersedes(RelayRoute other) {
+		if (other == null || incarnation != other.incarnation) {
+			return other == null || incarnation > other.incarnation;
+		}
+		return version > other.version;
+	}
+
+	@Override
+	public String toString() {
+		return id + "@" + incarnation + "." + version + Arrays.toString(parents);
+	}
+}
@@ -0,0 +1,13 @@
+package se.kth.swim.msg;
+
+/**
+ * Failure detector message carrying a sequence number - together with its
+ * source and type it identifies the message, so copies sent through several
+ * relays can be told apart from new messages. Sequence numbers start at a per
+ * boot epoch, so the messages of a restarted node are not taken for copies.
+ */
+public interface Sequenced {
+
+	public int getSn();
+
+}
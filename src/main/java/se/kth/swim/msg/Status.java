@@ -28,14 +28,24 @@ public class Status {
 	private Integer aliveNodes;
 	private Integer suspectedNodes;
 	private Integer failedNodes;
+	//round trip time estimate of the node over all its peers, -1 if unknown
+	private long smoothedRtt;
+	private long rttVariance;
     
     public Status(int receivedPings, int aliveNodes, int suspectedNodes,
 			int failedNodes) {
+		this(receivedPings, aliveNodes, suspectedNodes, failedNodes, -1, -1);
+	}
+    
+    public Status(int receivedPings, int aliveNodes, int suspectedNodes,
+			int failedNodes, long smoothedRtt, long rttVariance) {
 		super();
 		this.receivedPings = receivedPings;
 		this.aliveNodes = aliveNodes;
 		this.suspectedNodes = suspectedNodes;
 		this.failedNodes = failedNodes;
+		this.smoothedRtt = smoothedRtt;
+		this.rttVariance = rttVariance;
 	}
 
 	public Integer getReceivedPings() {
@@ -70,4 +80,12 @@ public class Status {
 		this.failedNodes = failedNodes;
 	}
 
+	public long getSmoothedRtt() {
+		return smoothedRtt;
+	}
+
+	public long getRttVariance() {
+		return rttVariance;
+	}
+
 }
@@ -1,10 +1,7 @@
 package se.kth.swim.msg.net;
 
-import java.util.Map;
-import java.util.UUID;
-
 import se.kth.swim.msg.FDMessage;
-import se.kth.swim.msg.PiggyBackElement;
+import se.kth.swim.msg.PiggybackBatch;
 import se.kth.swim.msg.Ping;
 import se.sics.p2ptoolbox.util.network.NatedAddress;
 
@@ -15,9 +12,9 @@ public class IndirectPing extends Ping{
 		// TODO Auto-generated constructor stub
 	}
 
-	public IndirectPing(UUID sn, Map<Integer, PiggyBackElement> nodes,
-			NatedAddress forwardNode, UUID initialUUID) {
-		super(sn, nodes, forwardNode, initialUUID);
+	public IndirectPing(int sn, PiggybackBatch nodes,
+			NatedAddress forwardNode, int initialSn) {
+		super(sn, nodes, forwardNode, initialSn);
 		// TODO Auto-generated constructor stub
 	}
 
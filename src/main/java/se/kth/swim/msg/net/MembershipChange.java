@@ -0,0 +1,22 @@
+package se.kth.swim.msg.net;
+
+import se.sics.kompics.KompicsEvent;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+public class MembershipChange implements KompicsEvent {
+	private final NatedAddress member;
+	private final NodeStatus status;
+
+	public MembershipChange(NatedAddress member, NodeStatus status) {
+		this.member = member;
+		this.status = status;
+	}
+
+	public NatedAddress getMember() {
+		return member;
+	}
+
+	public NodeStatus getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,15 @@
+package se.kth.swim.msg.net;
+
+import se.sics.kompics.PortType;
+
+/**
+ * Membership changes of the failure detector, for the components that keep
+ * state about other nodes - the nat traversal drops suspected relays.
+ */
+public class MembershipPort extends PortType{
+
+	{
+		indication(MembershipChange.class);
+	}
+	
+}
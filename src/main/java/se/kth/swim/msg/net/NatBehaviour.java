@@ -0,0 +1,26 @@
+package se.kth.swim.msg.net;
+
+/**
+ * Simulated nat of a node, it decides whether two nated nodes can punch a hole
+ * for a direct path. The simulator itself delivers every message, so the nat
+ * traversal enforces the filtering: a nated node drops direct messages from
+ * other nated nodes it has no hole for.
+ */
+public enum NatBehaviour {
+	OPEN, FULL_CONE, RESTRICTED_CONE, PORT_RESTRICTED, SYMMETRIC;
+
+	/**
+	 * @return true if a hole punched between nodes behind these nats holds - a
+	 * symmetric nat maps every peer to a new port, which only a cone nat that
+	 * does not filter on the port can reach
+	 */
+	public boolean canPunch(NatBehaviour other) {
+		if (this == SYMMETRIC) {
+			return other == OPEN || other == FULL_CONE || other == RESTRICTED_CONE;
+		}
+		if (other == SYMMETRIC) {
+			return other.canPunch(this);
+		}
+		return true;
+	}
+}
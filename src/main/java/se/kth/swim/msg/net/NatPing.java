@@ -5,10 +5,13 @@ import java.util.UUID;
 public class NatPing {
 
 	private UUID sn;
+	//true from a child to its parent - asks to be (kept) relayed for,
+	//false for a standby probe
+	private boolean adopt;
 
-	public NatPing(UUID sn) {
+	public NatPing(UUID sn, boolean adopt) {
 		this.sn=sn;
-		// TODO Auto-generated constructor stub
+		this.adopt=adopt;
 	}
 
 	public UUID getSn() {
@@ -19,4 +22,8 @@ public class NatPing {
 		this.sn = sn;
 	}
 
+	public boolean isAdopt() {
+		return adopt;
+	}
+
 }
@@ -1,18 +1,24 @@
 package se.kth.swim.msg.net;
 
-import java.util.Map;
 import java.util.UUID;
 
-import se.kth.swim.msg.FDMessage;
-import se.kth.swim.msg.PiggyBackElement;
+import se.kth.swim.msg.RelayLoad;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
 
 public class NatPong {
 
 	private UUID sn;
+	//false if the relay is full and refuses the node as a child
+	private boolean accepted;
+	private RelayLoad load;
+	//less loaded relay suggested on a refusal, may be null
+	private NatedAddress redirect;
 
-	public NatPong(UUID sn) {
-		// TODO Auto-generated constructor stub
+	public NatPong(UUID sn, boolean accepted, RelayLoad load, NatedAddress redirect) {
 		this.sn=sn;
+		this.accepted=accepted;
+		this.load=load;
+		this.redirect=redirect;
 	}
 
 	public UUID getSn() {
@@ -23,5 +29,16 @@ public class NatPong {
 		this.sn = sn;
 	}
 
-	
+	public boolean isAccepted() {
+		return accepted;
+	}
+
+	public RelayLoad getLoad() {
+		return load;
+	}
+
+	public NatedAddress getRedirect() {
+		return redirect;
+	}
+
 }
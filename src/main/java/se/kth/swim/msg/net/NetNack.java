@@ -0,0 +1,22 @@
+package se.kth.swim.msg.net;
+
+import se.kth.swim.msg.Nack;
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+
+public class NetNack extends NetMsg<Nack>{
+
+	public NetNack(NatedAddress src, NatedAddress dst, Nack content) {
+		super(src, dst,content);
+	}
+
+	@Override
+	public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+		return new NetNack(newHeader,getContent());
+	}
+
+	public NetNack(Header<NatedAddress> header, Nack content) {
+		super(header, content);
+	}
+}
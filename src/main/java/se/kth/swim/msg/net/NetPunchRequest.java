@@ -0,0 +1,21 @@
+package se.kth.swim.msg.net;
+
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+public class NetPunchRequest extends NetMsg<PunchRequest>{
+
+	public NetPunchRequest(NatedAddress src, NatedAddress dst, PunchRequest content) {
+		super(src, dst, content);
+	}
+
+	public NetPunchRequest(Header<NatedAddress> header, PunchRequest content) {
+		super(header, content);
+	}
+
+	@Override
+	public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+		return new NetPunchRequest(newHeader,getContent());
+	}
+
+}
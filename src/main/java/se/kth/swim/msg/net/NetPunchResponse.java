@@ -0,0 +1,21 @@
+package se.kth.swim.msg.net;
+
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+public class NetPunchResponse extends NetMsg<PunchResponse>{
+
+	public NetPunchResponse(NatedAddress src, NatedAddress dst, PunchResponse content) {
+		super(src, dst, content);
+	}
+
+	public NetPunchResponse(Header<NatedAddress> header, PunchResponse content) {
+		super(header, content);
+	}
+
+	@Override
+	public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+		return new NetPunchResponse(newHeader,getContent());
+	}
+
+}
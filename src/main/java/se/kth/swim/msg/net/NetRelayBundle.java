@@ -0,0 +1,27 @@
+package se.kth.swim.msg.net;
+
+import java.util.List;
+
+import se.sics.kompics.network.Header;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+
+/**
+ * Messages a relay coalesced for one nated child, each with its relay header,
+ * sent as a single message and unpacked by the child's nat traversal.
+ */
+public class NetRelayBundle extends NetMsg<List<NetMsg<Object>>>{
+
+	public NetRelayBundle(NatedAddress src, NatedAddress dst, List<NetMsg<Object>> content) {
+		super(src, dst, content);
+	}
+
+	public NetRelayBundle(Header<NatedAddress> header, List<NetMsg<Object>> content) {
+		super(header, content);
+	}
+
+	@Override
+	public NetMsg copyMessage(Header<NatedAddress> newHeader) {
+		return new NetRelayBundle(newHeader,getContent());
+	}
+
+}
@@ -0,0 +1,19 @@
+package se.kth.swim.msg.net;
+
+/**
+ * Hole punching rendezvous - sent through the relay of the other nated node,
+ * with the nat of the sender.
+ */
+public class PunchRequest {
+
+	private NatBehaviour behaviour;
+
+	public PunchRequest(NatBehaviour behaviour) {
+		this.behaviour=behaviour;
+	}
+
+	public NatBehaviour getBehaviour() {
+		return behaviour;
+	}
+
+}
@@ -0,0 +1,19 @@
+package se.kth.swim.msg.net;
+
+/**
+ * Answer to a hole punching request - sent on the direct path when the hole
+ * holds, through the relay otherwise.
+ */
+public class PunchResponse {
+
+	private boolean punched;
+
+	public PunchResponse(boolean punched) {
+		this.punched=punched;
+	}
+
+	public boolean isPunched() {
+		return punched;
+	}
+
+}
@@ -34,8 +34,12 @@ import org.slf4j.LoggerFactory;
 
 import se.kth.swim.AggregatorComp;
 import se.kth.swim.HostComp;
+import se.kth.swim.NatConfig;
 import se.kth.swim.SwimComp;
+import se.kth.swim.SwimConfig;
 import se.kth.swim.croupier.CroupierConfig;
+import se.kth.swim.croupier.CroupierSelectionPolicy;
+import se.kth.swim.msg.net.NatBehaviour;
 import se.sics.p2ptoolbox.simulator.cmd.OperationCmd;
 import se.sics.p2ptoolbox.simulator.cmd.impl.ChangeNetworkModelCmd;
 import se.sics.p2ptoolbox.simulator.cmd.impl.SimulationResult;
@@ -72,8 +76,15 @@ public class SwimScenario {
 	 private static List<Integer> KILLED;
     private static long seed;
     private static InetAddress localHost;
-    //int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout
-    private static CroupierConfig croupierConfig = new CroupierConfig(10, 5, 2000, 1000); 
+    //int viewSize, int shuffleSize, long shufflePeriod, long shuffleTimeout, CroupierSelectionPolicy policy, double softMaxTemperature, int parallelShuffles, int joinShuffleSize
+    private static CroupierConfig croupierConfig = new CroupierConfig(10, 5, 2000, 1000, CroupierSelectionPolicy.RANDOM, 0, 1, 10); 
+    //int piggybackSize, int disseminationMultiplier, int localHealthMax, int suspicionMaxMultiplier
+    private static SwimConfig swimConfig = new SwimConfig(10, 4, 8, 2);
+    //int relayCapacity, boolean parallelRelay, long relayBatchWindow, int relayBatchBytes, boolean holePunching, double maxChildRate
+    private static NatConfig natConfig = new NatConfig(4, false, 0, 1024, false, 50);
+    //nats of the nated nodes, assigned round robin by node id
+    private static final NatBehaviour[] natBehaviours = new NatBehaviour[]{
+        NatBehaviour.FULL_CONE, NatBehaviour.RESTRICTED_CONE, NatBehaviour.PORT_RESTRICTED, NatBehaviour.SYMMETRIC};
     static {
         try {
             localHost = InetAddress.getByName("127.0.0.1");
@@ -171,12 +182,15 @@ public class SwimScenario {
                 @Override
                 public HostComp.HostInit getNodeComponentInit(NatedAddress aggregatorServer, Set<NatedAddress> bootstrapNodes) {
 
+                    NatBehaviour natBehaviour;
                     if (nodeId % 2 == 0) {
                         //open address
                         nodeAddress = new BasicNatedAddress(new BasicAddress(localHost, 12345, nodeId));
+                        natBehaviour = NatBehaviour.OPEN;
                     } else {
                         //nated address
                         nodeAddress = new BasicNatedAddress(new BasicAddress(localHost, 12345, nodeId), NatType.NAT, bootstrapNodes);
+                        natBehaviour = natBehaviours[(nodeId / 2) % natBehaviours.length];
                     }
 //                    if (bootstrapNodes.contains(nodeAddress)){
 //                    	bootstrapNodes.remove(nodeAddress.getId());
@@ -189,7 +203,7 @@ public class SwimScenario {
                     long nodeSeed = seed + nodeId;
                     log.info("number of bootstrapnodes for {} is {}",new Object[]{nodeId,bootstrapNodes.size()});
                     System.out.println("RECONNECTING NODE: "+nodeId);
-                    return new HostComp.HostInit(nodeAddress, bootstrapNodes, aggregatorServer, nodeSeed, croupierConfig);
+                    return new HostComp.HostInit(nodeAddress, bootstrapNodes, aggregatorServer, nodeSeed, croupierConfig, swimConfig, natConfig, natBehaviour);
                 }
 
                 @Override
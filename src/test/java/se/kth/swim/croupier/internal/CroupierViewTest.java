@@ -0,0 +1,250 @@
+/**
+ * This file is part of the Kompics P2P Framework.
+ *
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * Kompics is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ */
+package se.kth.swim.croupier.internal;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.croupier.CroupierSelectionPolicy;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class CroupierViewTest {
+
+    private static final Set<BasicAddress> NONE = new HashSet<BasicAddress>();
+
+    private static InetAddress localHost;
+
+    static {
+        try {
+            localHost = InetAddress.getByName("127.0.0.1");
+        } catch (UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static NatedAddress address(int id) {
+        return new BasicNatedAddress(new BasicAddress(localHost, 12345, id));
+    }
+
+    static CroupierView<Object> view(int viewSize, long seed) {
+        return new CroupierView<Object>((BasicAddress) address(0).getBaseAdr(), viewSize, new Random(seed));
+    }
+
+    //merges nodes from..to-1, with the age of their id
+    static void fill(CroupierView<Object> view, int from, int to) {
+        Set<CroupierContainer<Object>> descriptors = new HashSet<CroupierContainer<Object>>();
+        for (int id = from; id < to; id++) {
+            descriptors.add(new CroupierContainer<Object>(address(id), null, id));
+        }
+        view.selectToKeep(UUID.randomUUID(), address(1000), descriptors);
+    }
+
+    static Set<Integer> ids(Set<CroupierContainer<Object>> descriptors) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (CroupierContainer<Object> descriptor : descriptors) {
+            ids.add(descriptor.getSource().getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void mergeFillsUpToTheViewSizeWithoutSelf() {
+        CroupierView<Object> view = view(5, 1);
+        fill(view, 0, 10);
+        Assert.assertEquals(5, view.size());
+        Assert.assertFalse(ids(view.sample()).contains(0));
+    }
+
+    @Test
+    public void copySetIsARandomSampleOfDistinctEntries() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 11);
+        Set<Integer> seen = new HashSet<Integer>();
+        for (int i = 0; i < 50; i++) {
+            Set<Integer> sample = ids(view.initiatorCopySet(UUID.randomUUID(), 3, address(1)));
+            Assert.assertEquals(3, sample.size());
+            seen.addAll(sample);
+        }
+        Assert.assertEquals(ids(view.sample()), seen);
+        Assert.assertEquals(10, view.receiverCopySet(UUID.randomUUID(), 20, address(1)).size());
+    }
+
+    @Test
+    public void removalKeepsTheOtherEntries() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 11);
+        view.timedOut(address(3));
+        view.timedOut(address(10));
+        view.timedOut(address(42));
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int id = 1; id < 11; id++) {
+            if (id != 3 && id != 10) {
+                expected.add(id);
+            }
+        }
+        Assert.assertEquals(8, view.size());
+        Assert.assertEquals(expected, ids(view.sample()));
+        fill(view, 3, 4);
+        Assert.assertEquals(9, view.size());
+        Assert.assertTrue(ids(view.sample()).contains(3));
+    }
+
+    @Test
+    public void responseReplacesTheEntriesSentInTheShuffle() {
+        CroupierView<Object> view = view(4, 1);
+        fill(view, 1, 5);
+        UUID shuffleId = UUID.randomUUID();
+        Set<Integer> sent = ids(view.initiatorCopySet(shuffleId, 2, address(1)));
+        Set<CroupierContainer<Object>> response = new HashSet<CroupierContainer<Object>>();
+        response.add(new CroupierContainer<Object>(address(20), null, 0));
+        response.add(new CroupierContainer<Object>(address(21), null, 0));
+        view.selectToKeep(shuffleId, address(1), response);
+        Set<Integer> kept = ids(view.sample());
+        Assert.assertEquals(4, kept.size());
+        Assert.assertTrue(kept.contains(20));
+        Assert.assertTrue(kept.contains(21));
+        for (Integer id : sent) {
+            Assert.assertFalse(kept.contains(id));
+        }
+    }
+
+    @Test
+    public void sampleIsSharedUntilTheViewChanges() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 6);
+        Set<CroupierContainer<Object>> sample = view.sample();
+        view.incrementDescriptorAges();
+        view.initiatorCopySet(UUID.randomUUID(), 3, address(1));
+        Assert.assertSame(sample, view.sample());
+        view.timedOut(address(2));
+        Assert.assertNotSame(sample, view.sample());
+        Assert.assertEquals(4, view.sample().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sampleIsReadOnly() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 3);
+        view.sample().clear();
+    }
+
+    //how many times each node is picked in the given number of selections
+    static int[] picks(CroupierView<Object> view, CroupierSelectionPolicy policy,
+            boolean softmax, double temperature, int selections, int nodes) {
+        int[] picks = new int[nodes + 1];
+        for (int i = 0; i < selections; i++) {
+            picks[view.selectPeerToShuffleWith(policy, softmax, temperature, NONE).getId()]++;
+        }
+        return picks;
+    }
+
+    @Test
+    public void tailPicksTheOldestEntry() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 6);
+        int[] picks = picks(view, CroupierSelectionPolicy.TAIL, false, 0, 20, 5);
+        Assert.assertEquals(20, picks[5]);
+    }
+
+    @Test
+    public void softmaxFavoursOldEntries() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 6);
+        int[] picks = picks(view, CroupierSelectionPolicy.TAIL, true, 1, 10000, 5);
+        for (int id = 1; id < 5; id++) {
+            Assert.assertTrue(picks[id] < picks[id + 1]);
+        }
+        //rank 0 weighs 1 / (1 + e^-1 + ... + e^-4), about 0.64
+        Assert.assertEquals(0.64, picks[5] / 10000.0, 0.03);
+    }
+
+    @Test
+    public void softmaxAtZeroTemperatureIsTheOldestEntry() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 6);
+        int[] picks = picks(view, CroupierSelectionPolicy.TAIL, true, 0, 20, 5);
+        Assert.assertEquals(20, picks[5]);
+    }
+
+    @Test
+    public void healerRemovesOnlyFromAFullView() {
+        CroupierView<Object> view = view(5, 1);
+        fill(view, 1, 6);
+        NatedAddress peer = view.selectPeerToShuffleWith(CroupierSelectionPolicy.HEALER, false, 0, NONE);
+        Assert.assertEquals(5, peer.getId().intValue());
+        Assert.assertEquals(4, view.size());
+        Assert.assertFalse(ids(view.sample()).contains(5));
+        Assert.assertEquals(4, view.selectPeerToShuffleWith(CroupierSelectionPolicy.HEALER, false, 0, NONE).getId().intValue());
+        Assert.assertEquals(4, view.size());
+    }
+
+    @Test
+    public void tailAndRandomKeepTheSelectedEntry() {
+        CroupierView<Object> view = view(5, 1);
+        fill(view, 1, 6);
+        view.selectPeerToShuffleWith(CroupierSelectionPolicy.TAIL, true, 1, NONE);
+        int[] picks = picks(view, CroupierSelectionPolicy.RANDOM, false, 0, 1000, 5);
+        Assert.assertEquals(5, view.size());
+        for (int id = 1; id <= 5; id++) {
+            Assert.assertTrue(picks[id] > 100);
+        }
+    }
+
+    static Set<BasicAddress> excluded(int... ids) {
+        Set<BasicAddress> excluded = new HashSet<BasicAddress>();
+        for (int id : ids) {
+            excluded.add((BasicAddress) address(id).getBaseAdr());
+        }
+        return excluded;
+    }
+
+    @Test
+    public void excludedEntriesAreNotSelected() {
+        CroupierView<Object> view = view(10, 1);
+        fill(view, 1, 6);
+        Assert.assertEquals(4, view.selectPeerToShuffleWith(CroupierSelectionPolicy.TAIL, false, 0, excluded(5)).getId().intValue());
+        int[] picks = new int[6];
+        for (int i = 0; i < 200; i++) {
+            picks[view.selectPeerToShuffleWith(CroupierSelectionPolicy.RANDOM, false, 0, excluded(1, 2)).getId()]++;
+            picks[view.selectPeerToShuffleWith(CroupierSelectionPolicy.TAIL, true, 1, excluded(1, 2)).getId()]++;
+        }
+        Assert.assertEquals(0, picks[1] + picks[2]);
+        Assert.assertNull(view.selectPeerToShuffleWith(CroupierSelectionPolicy.RANDOM, false, 0, excluded(1, 2, 3, 4, 5)));
+    }
+
+    @Test
+    public void healerKeepsExcludedEntries() {
+        CroupierView<Object> view = view(5, 1);
+        fill(view, 1, 6);
+        Assert.assertNull(view.selectPeerToShuffleWith(CroupierSelectionPolicy.HEALER, false, 0, excluded(1, 2, 3, 4, 5)));
+        Assert.assertEquals(5, view.size());
+        Assert.assertEquals(4, view.selectPeerToShuffleWith(CroupierSelectionPolicy.HEALER, false, 0, excluded(5)).getId().intValue());
+        Assert.assertEquals(4, view.size());
+        Assert.assertTrue(ids(view.sample()).contains(5));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirectPathsTest {
+
+    @Test
+    public void idlePathCloses() {
+        DirectPaths paths = new DirectPaths(100, 50, 1000);
+        paths.punched(1, 0);
+        Assert.assertTrue(paths.isDirect(1, 100));
+        Assert.assertFalse(paths.isDirect(1, 101));
+        Assert.assertEquals(0, paths.size());
+    }
+
+    @Test
+    public void onlyIncomingTrafficKeepsThePathOpen() {
+        DirectPaths paths = new DirectPaths(100, 50, 1000);
+        paths.punched(1, 0);
+        paths.heard(1, 90);
+        Assert.assertTrue(paths.isDirect(1, 190));
+        Assert.assertFalse(paths.isDirect(1, 191));
+    }
+
+    @Test
+    public void sideThatExpiredLastSwitchesBackToRelays() {
+        //nodes 1 and 2 punched a path to each other, 2 keeps sending direct
+        //while 1 stays quiet
+        DirectPaths one = new DirectPaths(100, 50, 1000);
+        DirectPaths two = new DirectPaths(100, 50, 1000);
+        one.punched(2, 0);
+        two.punched(1, 0);
+        for (long now = 10; now <= 90; now += 10) {
+            Assert.assertTrue(two.isDirect(1, now));
+            one.heard(2, now);
+        }
+        //2 never heard from 1 - its side expires and it sends through the relays
+        Assert.assertFalse(two.isDirect(1, 101));
+        Assert.assertTrue(one.isDirect(2, 101));
+        //1 gets the relayed message and must no longer send direct either
+        one.relayed(2, 101);
+        Assert.assertFalse(one.isDirect(2, 101));
+        Assert.assertFalse(one.accepts(2, 101));
+    }
+
+    @Test
+    public void relayedTrafficRightAfterThePunchKeepsThePath() {
+        DirectPaths paths = new DirectPaths(100, 50, 1000);
+        paths.punched(1, 0);
+        paths.relayed(1, 50);
+        Assert.assertTrue(paths.isDirect(1, 50));
+        paths.relayed(1, 51);
+        Assert.assertFalse(paths.isDirect(1, 51));
+    }
+
+    @Test
+    public void trafficDoesNotOpenAPath() {
+        DirectPaths paths = new DirectPaths(100, 50, 1000);
+        paths.heard(1, 0);
+        Assert.assertFalse(paths.isDirect(1, 0));
+        Assert.assertFalse(paths.accepts(1, 0));
+    }
+
+    @Test
+    public void punchAttemptsAreSpacedAndAcceptedWhilePending() {
+        DirectPaths paths = new DirectPaths(100, 50, 1000);
+        Assert.assertTrue(paths.attempt(1, 0));
+        Assert.assertTrue(paths.accepts(1, 50));
+        Assert.assertFalse(paths.accepts(1, 51));
+        Assert.assertFalse(paths.attempt(1, 1000));
+        Assert.assertTrue(paths.attempt(1, 1001));
+    }
+}
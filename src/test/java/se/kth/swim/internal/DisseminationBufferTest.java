@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.msg.PiggybackBatch;
+import se.kth.swim.msg.RelayRoute;
+import se.kth.swim.msg.net.NodeStatus;
+
+public class DisseminationBufferTest {
+
+    private static final RelayRoute[] NO_ROUTES = new RelayRoute[0];
+
+    private static void put(MembershipTable members, int id, NodeStatus status, int times) {
+        int slot = members.put(MembershipTableTest.address(id), status, 0);
+        members.setDisseminateTimesAt(slot, times);
+    }
+
+    private static Set<Integer> ids(PiggybackBatch batch) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (int i = 0; i < batch.size(); i++) {
+            ids.add(batch.getId(i));
+        }
+        return ids;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyPiggyback() {
+        new DisseminationBuffer(new MembershipTable(4), 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroMultiplier() {
+        new DisseminationBuffer(new MembershipTable(4), 1, 0);
+    }
+
+    @Test
+    public void retransmitLimitGrowsWithLogOfLiveMembers() {
+        Assert.assertEquals(4, DisseminationBuffer.retransmitLimit(4, 0));
+        Assert.assertEquals(4, DisseminationBuffer.retransmitLimit(4, 1));
+        Assert.assertEquals(4, DisseminationBuffer.retransmitLimit(4, 9));
+        Assert.assertEquals(8, DisseminationBuffer.retransmitLimit(4, 10));
+        Assert.assertEquals(12, DisseminationBuffer.retransmitLimit(4, 100));
+    }
+
+    @Test
+    public void retransmitLimitIgnoresFailedMembers() {
+        MembershipTable members = new MembershipTable(16);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 2);
+        for (int id = 0; id < 9; id++) {
+            put(members, id, NodeStatus.ALIVE, 0);
+        }
+        Assert.assertEquals(2, buffer.retransmitLimit());
+        put(members, 9, NodeStatus.ALIVE, 0);
+        Assert.assertEquals(4, buffer.retransmitLimit());
+        put(members, 9, NodeStatus.FAILED, 0);
+        Assert.assertEquals(2, buffer.retransmitLimit());
+    }
+
+    @Test
+    public void changeIsSentExactlyItsDisseminationCount() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 1);
+        put(members, 1, NodeStatus.SUSPECTED, 3);
+        buffer.add(1);
+        for (int i = 0; i < 3; i++) {
+            PiggybackBatch batch = buffer.select(NO_ROUTES);
+            Assert.assertEquals(1, batch.size());
+            Assert.assertEquals(NodeStatus.SUSPECTED, batch.getStatus(0));
+        }
+        Assert.assertTrue(buffer.select(NO_ROUTES).isEmpty());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void leastSentChangesGoFirst() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 2, 1);
+        for (int id = 1; id <= 3; id++) {
+            put(members, id, NodeStatus.ALIVE, 10);
+            buffer.add(id);
+        }
+        Set<Integer> first = ids(buffer.select(NO_ROUTES));
+        Assert.assertEquals(2, first.size());
+        Set<Integer> second = ids(buffer.select(NO_ROUTES));
+        Assert.assertTrue("the change left out is sent next", second.contains(3));
+        Assert.assertFalse(first.contains(3));
+    }
+
+    @Test
+    public void newerChangeReplacesTheOlderOne() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 1);
+        put(members, 1, NodeStatus.ALIVE, 10);
+        buffer.add(1);
+        buffer.select(NO_ROUTES);
+        buffer.add(1);
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertEquals(1, buffer.select(NO_ROUTES).size());
+    }
+
+    @Test
+    public void newMemberTurnsAliveAfterItsDissemination() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 1);
+        put(members, 1, NodeStatus.NEW, 1);
+        buffer.add(1);
+        Assert.assertEquals(NodeStatus.NEW, buffer.select(NO_ROUTES).getStatus(0));
+        PiggybackBatch batch = buffer.select(NO_ROUTES);
+        Assert.assertEquals(NodeStatus.ALIVE, batch.getStatus(0));
+        Assert.assertEquals(NodeStatus.ALIVE, members.statusAt(members.indexOf(1)));
+    }
+
+    @Test
+    public void forgottenMembersAreDropped() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 1);
+        buffer.add(42);
+        Assert.assertTrue(buffer.select(NO_ROUTES).isEmpty());
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void suspicionsCarryTheirSuspector() {
+        MembershipTable members = new MembershipTable(4);
+        DisseminationBuffer buffer = new DisseminationBuffer(members, 4, 1);
+        put(members, 1, NodeStatus.SUSPECTED, 1);
+        members.setSuspectorAt(members.indexOf(1), 5);
+        put(members, 2, NodeStatus.ALIVE, 1);
+        buffer.add(1);
+        buffer.add(2);
+        PiggybackBatch batch = buffer.select(NO_ROUTES);
+        Assert.assertEquals(2, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Assert.assertEquals(batch.getId(i) == 1 ? 5 : -1, batch.getSuspector(i));
+        }
+    }
+
+    @Test
+    public void suspectorIsClearedWhenTheSuspicionEnds() {
+        MembershipTable members = new MembershipTable(4);
+        int slot = members.put(MembershipTableTest.address(1), NodeStatus.SUSPECTED, 0);
+        members.setSuspectorAt(slot, 5);
+        members.setStatusAt(slot, NodeStatus.ALIVE);
+        Assert.assertEquals(-1, members.suspectorAt(slot));
+        members.setStatusAt(slot, NodeStatus.SUSPECTED);
+        members.setSuspectorAt(slot, 6);
+        members.put(MembershipTableTest.address(1), NodeStatus.FAILED, 0);
+        Assert.assertEquals(-1, members.suspectorAt(slot));
+    }
+}
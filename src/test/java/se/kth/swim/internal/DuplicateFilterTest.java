@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.kth.swim.msg.Ping;
+import se.kth.swim.msg.Pong;
+
+public class DuplicateFilterTest {
+
+    @Test
+    public void secondCopyIsDropped() {
+        DuplicateFilter filter = new DuplicateFilter(8);
+        Assert.assertTrue(filter.firstSeen(1, Ping.class, 5));
+        Assert.assertFalse(filter.firstSeen(1, Ping.class, 5));
+        Assert.assertEquals(1, filter.size());
+    }
+
+    @Test
+    public void sourceTypeAndSeqIdentifyAMessage() {
+        DuplicateFilter filter = new DuplicateFilter(8);
+        Assert.assertTrue(filter.firstSeen(1, Ping.class, 5));
+        Assert.assertTrue(filter.firstSeen(2, Ping.class, 5));
+        Assert.assertTrue(filter.firstSeen(1, Pong.class, 5));
+        Assert.assertTrue(filter.firstSeen(1, Ping.class, 6));
+    }
+
+    @Test
+    public void onlyTheMostRecentAreRemembered() {
+        DuplicateFilter filter = new DuplicateFilter(2);
+        filter.firstSeen(1, Ping.class, 1);
+        filter.firstSeen(1, Ping.class, 2);
+        filter.firstSeen(1, Ping.class, 3);
+        Assert.assertEquals(2, filter.size());
+        Assert.assertTrue(filter.firstSeen(1, Ping.class, 1));
+        Assert.assertFalse(filter.firstSeen(1, Ping.class, 3));
+    }
+
+    @Test
+    public void restartedNodeIsNotTakenForACopy() {
+        DuplicateFilter filter = new DuplicateFilter(16);
+        ProbeTable beforeRestart = new ProbeTable(1000);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(filter.firstSeen(7, Ping.class, beforeRestart.nextSeq()));
+        }
+        ProbeTable afterRestart = new ProbeTable(2000);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(filter.firstSeen(7, Ping.class, afterRestart.nextSeq()));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import org.junit.Assert;
+import org.junit.Test;
+import se.kth.swim.msg.net.NodeStatus;
+import se.sics.p2ptoolbox.util.network.NatedAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicAddress;
+import se.sics.p2ptoolbox.util.network.impl.BasicNatedAddress;
+
+public class MembershipTableTest {
+
+    private static InetAddress localHost;
+
+    static {
+        try {
+            localHost = InetAddress.getByName("127.0.0.1");
+        } catch (UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static NatedAddress address(int id) {
+        return new BasicNatedAddress(new BasicAddress(localHost, 12345, id));
+    }
+
+    @Test
+    public void unknownMemberHasNoSlot() {
+        MembershipTable members = new MembershipTable(4);
+        Assert.assertEquals(-1, members.indexOf(3));
+        Assert.assertEquals(0, members.size());
+    }
+
+    @Test
+    public void putKeepsTheMemberState() {
+        MembershipTable members = new MembershipTable(4);
+        int slot = members.put(address(3), NodeStatus.SUSPECTED, 2);
+        Assert.assertEquals(slot, members.indexOf(3));
+        Assert.assertEquals(NodeStatus.SUSPECTED, members.statusAt(slot));
+        Assert.assertEquals(2, members.incarnationAt(slot));
+        Assert.assertEquals(address(3), members.addressAt(slot));
+        Assert.assertEquals(0, members.disseminateTimesAt(slot));
+    }
+
+    @Test
+    public void overwriteKeepsSlotAndDisseminationCount() {
+        MembershipTable members = new MembershipTable(4);
+        int slot = members.put(address(3), NodeStatus.ALIVE, 0);
+        members.setDisseminateTimesAt(slot, 5);
+        Assert.assertEquals(slot, members.put(address(3), NodeStatus.FAILED, 1));
+        Assert.assertEquals(1, members.size());
+        Assert.assertEquals(NodeStatus.FAILED, members.statusAt(slot));
+        Assert.assertEquals(1, members.incarnationAt(slot));
+        Assert.assertEquals(5, members.disseminateTimesAt(slot));
+    }
+
+    @Test
+    public void statusCountsFollowTransitions() {
+        MembershipTable members = new MembershipTable(4);
+        members.put(address(1), NodeStatus.ALIVE, 0);
+        members.put(address(2), NodeStatus.ALIVE, 0);
+        int slot = members.put(address(3), NodeStatus.NEW, 0);
+        Assert.assertEquals(2, members.count(NodeStatus.ALIVE));
+        Assert.assertEquals(1, members.count(NodeStatus.NEW));
+
+        members.setStatusAt(slot, NodeStatus.SUSPECTED);
+        members.put(address(1), NodeStatus.FAILED, 1);
+        Assert.assertEquals(1, members.count(NodeStatus.ALIVE));
+        Assert.assertEquals(0, members.count(NodeStatus.NEW));
+        Assert.assertEquals(1, members.count(NodeStatus.SUSPECTED));
+        Assert.assertEquals(1, members.count(NodeStatus.FAILED));
+        Assert.assertEquals(3, members.size());
+    }
+
+    @Test
+    public void growthKeepsEveryMember() {
+        MembershipTable members = new MembershipTable(1);
+        //colliding and negative ids as well
+        for (int i = -500; i < 500; i++) {
+            int slot = members.put(address(i * 1024), NodeStatus.ALIVE, i & 7);
+            members.setDisseminateTimesAt(slot, i);
+        }
+        Assert.assertEquals(1000, members.size());
+        Assert.assertEquals(1000, members.count(NodeStatus.ALIVE));
+        for (int i = -500; i < 500; i++) {
+            int slot = members.indexOf(i * 1024);
+            Assert.assertTrue(slot != -1);
+            Assert.assertEquals(i & 7, members.incarnationAt(slot));
+            Assert.assertEquals(i, members.disseminateTimesAt(slot));
+            Assert.assertEquals(Integer.valueOf(i * 1024), members.addressAt(slot).getId());
+        }
+        Assert.assertEquals(-1, members.indexOf(1));
+    }
+
+    //applies gossip the way SwimComp merges it
+    static void merge(MembershipTable members, int id, NodeStatus status, int incarnation) {
+        if (members.overrides(members.indexOf(id), status, incarnation)) {
+            members.put(address(id), status, incarnation);
+        }
+    }
+
+    @Test
+    public void staleFailureDoesNotOverrideARefutation() {
+        MembershipTable members = new MembershipTable(4);
+        merge(members, 3, NodeStatus.ALIVE, 0);
+        merge(members, 3, NodeStatus.SUSPECTED, 0);
+        merge(members, 3, NodeStatus.ALIVE, 1);
+        merge(members, 3, NodeStatus.FAILED, 0);
+        int slot = members.indexOf(3);
+        Assert.assertEquals(NodeStatus.ALIVE, members.statusAt(slot));
+        Assert.assertEquals(1, members.incarnationAt(slot));
+        merge(members, 3, NodeStatus.FAILED, 1);
+        Assert.assertEquals(NodeStatus.FAILED, members.statusAt(slot));
+    }
+
+    @Test
+    public void precedenceFollowsIncarnations() {
+        MembershipTable members = new MembershipTable(4);
+        Assert.assertTrue(members.overrides(-1, NodeStatus.FAILED, 0));
+        int slot = members.put(address(3), NodeStatus.ALIVE, 2);
+        Assert.assertFalse(members.overrides(slot, NodeStatus.ALIVE, 2));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.ALIVE, 3));
+        Assert.assertFalse(members.overrides(slot, NodeStatus.SUSPECTED, 1));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.SUSPECTED, 2));
+        members.setStatusAt(slot, NodeStatus.SUSPECTED);
+        Assert.assertFalse(members.overrides(slot, NodeStatus.SUSPECTED, 2));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.SUSPECTED, 3));
+        Assert.assertFalse(members.overrides(slot, NodeStatus.ALIVE, 2));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.FAILED, 2));
+        members.setStatusAt(slot, NodeStatus.FAILED);
+        Assert.assertFalse(members.overrides(slot, NodeStatus.FAILED, 5));
+        Assert.assertFalse(members.overrides(slot, NodeStatus.SUSPECTED, 5));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.ALIVE, 3));
+        Assert.assertTrue(members.overrides(slot, NodeStatus.NEW, 0));
+    }
+}
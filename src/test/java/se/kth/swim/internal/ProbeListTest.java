@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProbeListTest {
+
+    private ProbeList probes;
+
+    @Before
+    public void setUp() {
+        probes = new ProbeList(new Random(1234));
+    }
+
+    //the next n probes of a pass
+    private Set<Integer> pass(int n) {
+        Set<Integer> visited = new HashSet<Integer>();
+        for (int i = 0; i < n; i++) {
+            Assert.assertTrue("probed twice in a pass", visited.add(probes.next()));
+        }
+        return visited;
+    }
+
+    private Set<Integer> range(int from, int to) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (int id = from; id < to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void emptyListHasNoTarget() {
+        Assert.assertEquals(-1, probes.next());
+        Assert.assertEquals(-1, probes.random());
+    }
+
+    @Test
+    public void everyMemberOncePerPass() {
+        for (int id = 0; id < 50; id++) {
+            probes.add(id);
+        }
+        //also past the growth of the backing array and over several reshuffles
+        for (int round = 0; round < 5; round++) {
+            Assert.assertEquals(range(0, 50), pass(50));
+        }
+    }
+
+    @Test
+    public void addingTwiceKeepsOneEntry() {
+        probes.add(7);
+        probes.add(7);
+        Assert.assertEquals(1, probes.size());
+        Assert.assertEquals(7, probes.next());
+        Assert.assertEquals(7, probes.next());
+    }
+
+    @Test
+    public void memberAddedDuringPassIsProbedInThatPass() {
+        for (int id = 0; id < 10; id++) {
+            probes.add(id);
+        }
+        Set<Integer> visited = pass(4);
+        probes.add(10);
+        visited.addAll(pass(7));
+        Assert.assertEquals(range(0, 11), visited);
+    }
+
+    @Test
+    public void removalDuringPassKeepsTheRestOfThePass() {
+        for (int id = 0; id < 10; id++) {
+            probes.add(id);
+        }
+        Set<Integer> visited = pass(4);
+        int visitedId = visited.iterator().next();
+        Set<Integer> pending = range(0, 10);
+        pending.removeAll(visited);
+        int pendingId = pending.iterator().next();
+
+        probes.remove(visitedId);
+        probes.remove(pendingId);
+        probes.remove(100);
+        Assert.assertEquals(8, probes.size());
+        Assert.assertFalse(probes.contains(visitedId));
+        Assert.assertFalse(probes.contains(pendingId));
+
+        pending.remove(pendingId);
+        Assert.assertEquals(pending, pass(5));
+        //the next pass covers the remaining members
+        Set<Integer> remaining = range(0, 10);
+        remaining.remove(visitedId);
+        remaining.remove(pendingId);
+        Assert.assertEquals(remaining, pass(8));
+    }
+
+    @Test
+    public void randomSkipsExcludedMembers() {
+        for (int id = 0; id < 3; id++) {
+            probes.add(id);
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(2, probes.random(0, 1));
+        }
+        Assert.assertEquals(-1, probes.random(0, 1, 2));
+        //excluding unknown ids does not shrink the candidates
+        Assert.assertEquals(2, probes.random(0, 1, 5));
+        //only the first ids of the array are excluded
+        Assert.assertEquals(2, probes.random(new int[]{0, 1, 2}, 2));
+    }
+
+    @Test
+    public void randomDoesNotMoveTheCursor() {
+        for (int id = 0; id < 20; id++) {
+            probes.add(id);
+        }
+        Set<Integer> visited = pass(10);
+        for (int i = 0; i < 50; i++) {
+            probes.random();
+        }
+        visited.addAll(pass(10));
+        Assert.assertEquals(range(0, 20), visited);
+    }
+
+    @Test
+    public void removingManyMembersKeepsTheRestReachable() {
+        for (int id = 0; id < 200; id++) {
+            probes.add(id * 32);
+        }
+        for (int id = 0; id < 200; id += 2) {
+            probes.remove(id * 32);
+        }
+        Assert.assertEquals(100, probes.size());
+        Set<Integer> remaining = new HashSet<Integer>();
+        for (int id = 0; id < 200; id++) {
+            Assert.assertEquals(id % 2 == 1, probes.contains(id * 32));
+            if (id % 2 == 1) {
+                remaining.add(id * 32);
+            }
+        }
+        Assert.assertEquals(remaining, pass(100));
+    }
+}
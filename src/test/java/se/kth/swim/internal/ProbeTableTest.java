@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProbeTableTest {
+
+    @Test
+    public void startedProbeIsFoundBySeq() {
+        ProbeTable probes = new ProbeTable();
+        ProbeTable.Probe probe = probes.start(MembershipTableTest.address(3), 100);
+        Assert.assertSame(probe, probes.get(probe.getSeq()));
+        Assert.assertEquals(100, probe.getSentAt());
+        Assert.assertTrue(probes.isProbing(3));
+        Assert.assertNull(probes.get(probe.getSeq() + 1));
+    }
+
+    @Test
+    public void sequenceNumbersAreConsecutive() {
+        ProbeTable probes = new ProbeTable();
+        int first = probes.nextSeq();
+        Assert.assertEquals(first + 1, probes.start(MembershipTableTest.address(1), 0).getSeq());
+        Assert.assertEquals(first + 2, probes.nextSeq());
+    }
+
+    @Test
+    public void removedProbeIsGone() {
+        ProbeTable probes = new ProbeTable();
+        ProbeTable.Probe probe = probes.start(MembershipTableTest.address(3), 0);
+        Assert.assertSame(probe, probes.remove(probe.getSeq()));
+        Assert.assertNull(probes.get(probe.getSeq()));
+        Assert.assertNull(probes.remove(probe.getSeq()));
+        Assert.assertFalse(probes.isProbing(3));
+        Assert.assertEquals(0, probes.size());
+    }
+
+    @Test
+    public void targetIndexCountsProbesInFlight() {
+        ProbeTable probes = new ProbeTable();
+        ProbeTable.Probe own = probes.start(MembershipTableTest.address(3), 0);
+        ProbeTable.Probe relayed = probes.start(MembershipTableTest.address(3), 0);
+        relayed.relayFor(MembershipTableTest.address(9), 77);
+        probes.remove(own.getSeq());
+        Assert.assertTrue(probes.isProbing(3));
+        Assert.assertTrue(probes.get(relayed.getSeq()).isRelayed());
+        Assert.assertEquals(77, relayed.getRequesterSeq());
+        probes.remove(relayed.getSeq());
+        Assert.assertFalse(probes.isProbing(3));
+    }
+
+    @Test
+    public void lingeringProbeSurvivesTheRingWrapping() {
+        ProbeTable probes = new ProbeTable();
+        ProbeTable.Probe old = probes.start(MembershipTableTest.address(1), 0);
+        //keep only the first probe in flight while the window moves far past it
+        for (int i = 0; i < 100; i++) {
+            ProbeTable.Probe probe = probes.start(MembershipTableTest.address(2), 0);
+            Assert.assertSame(probe, probes.get(probe.getSeq()));
+            probes.remove(probe.getSeq());
+        }
+        Assert.assertSame(old, probes.get(old.getSeq()));
+        Assert.assertEquals(1, probes.size());
+        Assert.assertTrue(Arrays.equals(new int[]{old.getSeq()}, probes.seqs()));
+    }
+
+    @Test
+    public void manyProbesInFlightGrowTheRing() {
+        ProbeTable probes = new ProbeTable();
+        ProbeTable.Probe[] started = new ProbeTable.Probe[100];
+        for (int i = 0; i < started.length; i++) {
+            started[i] = probes.start(MembershipTableTest.address(i), i);
+        }
+        Assert.assertEquals(100, probes.size());
+        Assert.assertEquals(100, probes.seqs().length);
+        for (ProbeTable.Probe probe : started) {
+            Assert.assertSame(probe, probes.get(probe.getSeq()));
+        }
+    }
+
+    @Test
+    public void sequenceNumbersStartAtTheEpochAndSkipZero() {
+        ProbeTable probes = new ProbeTable(-1);
+        Assert.assertEquals(-1, probes.nextSeq());
+        Assert.assertEquals(1, probes.nextSeq());
+        Assert.assertEquals(1, new ProbeTable(0).nextSeq());
+        ProbeTable.Probe probe = new ProbeTable(Integer.MAX_VALUE).start(MembershipTableTest.address(3), 0);
+        Assert.assertEquals(Integer.MAX_VALUE, probe.getSeq());
+    }
+}
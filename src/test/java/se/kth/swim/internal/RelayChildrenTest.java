@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.kth.swim.msg.RelayLoad;
+
+public class RelayChildrenTest {
+
+    @Test
+    public void admitsUpToTheCapacity() {
+        RelayChildren children = new RelayChildren(2, 1000, 0, 0);
+        Assert.assertTrue(children.admit(1, 0));
+        Assert.assertTrue(children.admit(2, 0));
+        Assert.assertFalse(children.hasSpare());
+        Assert.assertFalse(children.admit(3, 0));
+        Assert.assertTrue(children.admit(1, 10));
+        Assert.assertEquals(2, children.size());
+    }
+
+    @Test
+    public void noCapacityMeansNoLimit() {
+        RelayChildren children = new RelayChildren(0, 1000, 0, 0);
+        for (int id = 0; id < 100; id++) {
+            Assert.assertTrue(children.admit(id, 0));
+        }
+        Assert.assertEquals(100, children.size());
+        for (int id = 0; id < 100; id++) {
+            Assert.assertTrue(children.isChild(id));
+        }
+    }
+
+    @Test
+    public void onlyChildrenAreRelayedFor() {
+        RelayChildren children = new RelayChildren(4, 1000, 0, 0);
+        children.admit(1, 0);
+        Assert.assertTrue(children.relayed(1, 100));
+        Assert.assertFalse(children.relayed(2, 100));
+        children.touch(2, 0);
+        Assert.assertFalse(children.isChild(2));
+    }
+
+    @Test
+    public void removeKeepsTheRestOfTheProbeRunReachable() {
+        RelayChildren children = new RelayChildren(0, 1000, 0, 0);
+        for (int id = 0; id < 64; id++) {
+            children.admit(id, 0);
+        }
+        for (int id = 0; id < 64; id += 2) {
+            children.remove(id);
+        }
+        Assert.assertEquals(32, children.size());
+        for (int id = 0; id < 64; id++) {
+            Assert.assertEquals(id % 2 == 1, children.isChild(id));
+        }
+        children.remove(1000);
+        Assert.assertEquals(32, children.size());
+    }
+
+    @Test
+    public void childrenThatStopPingingExpire() {
+        RelayChildren children = new RelayChildren(4, 1000, 0, 0);
+        children.admit(1, 0);
+        children.admit(2, 0);
+        children.touch(2, 900);
+        children.roll(1500);
+        Assert.assertFalse(children.isChild(1));
+        Assert.assertTrue(children.isChild(2));
+        Assert.assertTrue(children.hasSpare());
+    }
+
+    @Test
+    public void ratesAreSmoothedPerWindow() {
+        RelayChildren children = new RelayChildren(4, 10000, 0, 0);
+        children.admit(1, 0);
+        for (int i = 0; i < 8; i++) {
+            children.relayed(1, 100);
+        }
+        children.roll(1000);
+        RelayLoad load = children.load();
+        Assert.assertEquals(2, load.getMessageRate(), 1e-9);
+        Assert.assertEquals(200, load.getByteRate(), 1e-9);
+        Assert.assertEquals(0.25, load.load(), 1e-9);
+        children.roll(2000);
+        Assert.assertEquals(1.5, children.load().getMessageRate(), 1e-9);
+    }
+
+    @Test
+    public void onlyTheNoisyChildIsThrottled() {
+        RelayChildren children = new RelayChildren(4, 10000, 10, 0);
+        children.admit(1, 0);
+        children.admit(2, 0);
+        for (int i = 0; i < 100; i++) {
+            children.relayed(1, 100);
+        }
+        for (int i = 0; i < 5; i++) {
+            children.relayed(2, 100);
+        }
+        children.roll(1000);
+        Assert.assertEquals(25, children.messageRate(1), 1e-9);
+        Assert.assertEquals(1.25, children.messageRate(2), 1e-9);
+        Assert.assertTrue(children.isThrottled(1));
+        Assert.assertFalse(children.relayed(1, 100));
+        Assert.assertFalse(children.isThrottled(2));
+        Assert.assertTrue(children.relayed(2, 100));
+        //refused messages are not counted, the rate decays back under the limit
+        for (long now = 2000; children.isThrottled(1); now += 1000) {
+            children.roll(now);
+        }
+        Assert.assertTrue(children.messageRate(1) <= 10);
+        Assert.assertTrue(children.relayed(1, 100));
+    }
+
+    @Test
+    public void removedChildLeavesNoCountersBehind() {
+        RelayChildren children = new RelayChildren(0, 10000, 0, 0);
+        for (int id = 0; id < 64; id++) {
+            children.admit(id, 0);
+            children.relayed(id, id);
+        }
+        children.roll(1000);
+        for (int id = 0; id < 64; id += 2) {
+            children.remove(id);
+        }
+        for (int id = 1; id < 64; id += 2) {
+            Assert.assertEquals(id * 0.25, children.byteRate(id), 1e-9);
+        }
+        for (int id = 0; id < 64; id += 2) {
+            Assert.assertEquals(-1, children.messageRate(id), 1e-9);
+            children.admit(id, 1000);
+            Assert.assertEquals(0, children.messageRate(id), 1e-9);
+            Assert.assertEquals(0, children.byteRate(id), 1e-9);
+        }
+    }
+}
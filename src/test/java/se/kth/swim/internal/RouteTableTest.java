@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.kth.swim.msg.RelayRoute;
+
+public class RouteTableTest {
+
+    @Test
+    public void higherVersionReplacesTheRoute() {
+        RouteTable routes = new RouteTable();
+        Assert.assertTrue(routes.update(new RelayRoute(1, 0, 0, new int[]{2, 3}), 1));
+        Assert.assertTrue(routes.update(new RelayRoute(1, 0, 1, new int[]{2, 4}), 1));
+        Assert.assertFalse(routes.update(new RelayRoute(1, 0, 0, new int[]{2, 3}), 1));
+        Assert.assertTrue(routes.get(1).hasParent(4));
+    }
+
+    @Test
+    public void newIncarnationWinsOverAnyVersion() {
+        RouteTable routes = new RouteTable();
+        routes.update(new RelayRoute(1, 0, 5, new int[]{2, 3}), 1);
+        Assert.assertTrue(routes.update(new RelayRoute(1, 1, 0, new int[]{4, 5}), 1));
+        Assert.assertFalse(routes.update(new RelayRoute(1, 0, 6, new int[]{2, 3}), 1));
+        Assert.assertEquals(1, routes.get(1).getIncarnation());
+        Assert.assertTrue(routes.get(1).hasParent(5));
+    }
+
+    @Test
+    public void changesAreSelectedTheGivenNumberOfTimes() {
+        RouteTable routes = new RouteTable();
+        routes.update(new RelayRoute(1, 0, 0, new int[]{2}), 2);
+        routes.update(new RelayRoute(3, 0, 0, new int[]{2}), 1);
+        Assert.assertEquals(2, routes.select(5).length);
+        Assert.assertEquals(1, routes.select(5).length);
+        Assert.assertEquals(0, routes.select(5).length);
+        Assert.assertEquals(0, routes.pending());
+    }
+}
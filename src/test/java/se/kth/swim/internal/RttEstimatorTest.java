@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RttEstimatorTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvertedBounds() {
+        new RttEstimator(100, 50, 100);
+    }
+
+    @Test
+    public void initialTimeoutBeforeAnySample() {
+        RttEstimator rtt = new RttEstimator(10, 1000, 300);
+        Assert.assertEquals(300, rtt.timeout(1));
+        Assert.assertEquals(-1, rtt.smoothedRtt(1));
+        Assert.assertEquals(-1, rtt.clusterSmoothedRtt());
+        Assert.assertEquals(-1, rtt.clusterRttVariance());
+    }
+
+    @Test
+    public void firstSampleSetsRttAndHalfOfItAsVariance() {
+        RttEstimator rtt = new RttEstimator(10, 1000, 300);
+        rtt.sample(1, 100);
+        Assert.assertEquals(100, rtt.smoothedRtt(1));
+        Assert.assertEquals(50, rtt.clusterRttVariance());
+        //srtt + 4 * rttvar
+        Assert.assertEquals(300, rtt.timeout(1));
+    }
+
+    @Test
+    public void laterSamplesAreSmoothed() {
+        RttEstimator rtt = new RttEstimator(1, 10000, 300);
+        rtt.sample(1, 100);
+        rtt.sample(1, 180);
+        //rttvar = 50 + (80 - 50) / 4, srtt = 100 + 80 / 8
+        Assert.assertEquals(110, rtt.smoothedRtt(1));
+        Assert.assertEquals(58, rtt.clusterRttVariance());
+        Assert.assertEquals(110 + 4 * 57.5, rtt.timeout(1), 0.0);
+    }
+
+    @Test
+    public void negativeSamplesAreIgnored() {
+        RttEstimator rtt = new RttEstimator(10, 1000, 300);
+        rtt.sample(1, -5);
+        Assert.assertEquals(-1, rtt.smoothedRtt(1));
+    }
+
+    @Test
+    public void unmeasuredPeersUseTheClusterEstimate() {
+        RttEstimator rtt = new RttEstimator(10, 1000, 300);
+        rtt.sample(1, 20);
+        rtt.sample(2, 20);
+        Assert.assertEquals(-1, rtt.smoothedRtt(3));
+        Assert.assertEquals(20, rtt.clusterSmoothedRtt());
+        Assert.assertTrue(rtt.timeout(3) < 300);
+        Assert.assertEquals(rtt.timeout(3), rtt.timeout(1), 20.0);
+    }
+
+    @Test
+    public void timeoutIsClamped() {
+        RttEstimator rtt = new RttEstimator(50, 200, 1000);
+        Assert.assertEquals(200, rtt.timeout(1));
+        rtt.sample(1, 1);
+        Assert.assertEquals(50, rtt.timeout(1));
+        rtt.sample(2, 5000);
+        Assert.assertEquals(200, rtt.timeout(2));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SuspicionTest {
+
+    @Test
+    public void unconfirmedSuspicionLastsTheMaximum() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 1000, 500, 2000, 3);
+        Assert.assertEquals(2000, suspicion.timeout());
+        Assert.assertEquals(2000, suspicion.remaining(1000));
+        Assert.assertEquals(500, suspicion.remaining(2500));
+        Assert.assertEquals(0, suspicion.remaining(5000));
+    }
+
+    @Test
+    public void confirmationsShrinkTheTimeoutToTheMinimum() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 3);
+        long previous = suspicion.timeout();
+        for (int from = 1; from <= 3; from++) {
+            Assert.assertTrue(suspicion.confirm(from));
+            long timeout = suspicion.timeout();
+            Assert.assertTrue("timeout should shrink", timeout < previous);
+            previous = timeout;
+        }
+        Assert.assertEquals(500, suspicion.timeout());
+        //further confirmations change nothing
+        Assert.assertFalse(suspicion.confirm(4));
+        Assert.assertEquals(500, suspicion.timeout());
+    }
+
+    @Test
+    public void firstConfirmationFollowsTheLogCurve() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 1000, 2000, 3);
+        suspicion.confirm(1);
+        //log(2) / log(4) = 0.5 of the way down
+        Assert.assertEquals(1500, suspicion.timeout());
+    }
+
+    @Test
+    public void repeatedAndSelfConfirmationsDoNotCount() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 3);
+        Assert.assertFalse(suspicion.confirm(7));
+        Assert.assertEquals(2000, suspicion.timeout());
+        Assert.assertTrue(suspicion.confirm(1));
+        long timeout = suspicion.timeout();
+        Assert.assertFalse(suspicion.confirm(1));
+        Assert.assertEquals(timeout, suspicion.timeout());
+    }
+
+    @Test
+    public void fixedTimeoutWhenMinimumIsNotBelowMaximum() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 2000, 1000, 3);
+        Assert.assertEquals(2000, suspicion.timeout());
+        Assert.assertFalse(suspicion.confirm(1));
+        Assert.assertEquals(2000, suspicion.timeout());
+    }
+
+    @Test
+    public void relaysThatDidNotAnswerAreCounted() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 2);
+        Assert.assertEquals(0, suspicion.missedNacks());
+        suspicion.addRelay(1);
+        suspicion.addRelay(2);
+        //more relays than expected are ignored
+        suspicion.addRelay(3);
+        Assert.assertEquals(2, suspicion.missedNacks());
+        suspicion.answered(2);
+        suspicion.answered(3);
+        Assert.assertEquals(1, suspicion.missedNacks());
+    }
+
+    @Test
+    public void repeatedGossipOfOneSuspectorCountsOnce() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 3);
+        Assert.assertTrue(suspicion.confirm(1));
+        long timeout = suspicion.timeout();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(suspicion.confirm(1));
+        }
+        Assert.assertEquals(timeout, suspicion.timeout());
+    }
+
+    @Test
+    public void echoOfOurOwnSuspicionDoesNotCount() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 3);
+        Assert.assertFalse(suspicion.confirm(9));
+        Assert.assertFalse(suspicion.confirm(-1));
+        Assert.assertEquals(2000, suspicion.timeout());
+    }
+
+    @Test
+    public void distinctSuspectorsReachTheMinimum() {
+        Suspicion suspicion = new Suspicion(7, 9, 0, 0, 500, 2000, 3);
+        suspicion.confirm(1);
+        suspicion.confirm(9);
+        suspicion.confirm(2);
+        suspicion.confirm(1);
+        Assert.assertTrue(suspicion.timeout() > 500);
+        suspicion.confirm(3);
+        Assert.assertEquals(500, suspicion.timeout());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2009 Swedish Institute of Computer Science (SICS) Copyright (C)
+ * 2009 Royal Institute of Technology (KTH)
+ *
+ * GVoD is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package se.kth.swim.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private final List<String> expired = new ArrayList<String>();
+
+    private List<String> advance(TimerWheel<String> wheel, long time) {
+        expired.clear();
+        wheel.advance(time, expired);
+        return expired;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWheelSizeNotPowerOfTwo() {
+        new TimerWheel<String>(100, 10);
+    }
+
+    @Test
+    public void deadlineIsRoundedUpToTheTick() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 100);
+        advance(wheel, 1050);
+        int handle = wheel.schedule(1050, 250, "a");
+        Assert.assertEquals(1300, wheel.deadline(handle));
+        Assert.assertEquals(1300, wheel.nextDeadline());
+        Assert.assertTrue(advance(wheel, 1299).isEmpty());
+        Assert.assertEquals(Arrays.asList("a"), advance(wheel, 1300));
+        Assert.assertEquals(0, wheel.size());
+        Assert.assertEquals(-1, wheel.nextDeadline());
+    }
+
+    @Test
+    public void deadlineOnATickBoundaryIsKept() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 100);
+        int handle = wheel.schedule(1000, 200, "a");
+        Assert.assertEquals(1200, wheel.deadline(handle));
+    }
+
+    @Test
+    public void zeroDelayExpiresOnTheNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 100);
+        advance(wheel, 1000);
+        int handle = wheel.schedule(1000, 0, "a");
+        Assert.assertEquals(1100, wheel.deadline(handle));
+    }
+
+    @Test
+    public void neverExpiresEarly() {
+        Random rand = new Random(42);
+        TimerWheel<String> wheel = new TimerWheel<String>(16, 10);
+        Map<String, Long> due = new HashMap<String, Long>();
+        long time = 3;
+        for (int i = 0; i < 2000; i++) {
+            long delay = rand.nextInt(400);
+            String name = "t" + i;
+            wheel.schedule(time, delay, name);
+            due.put(name, time + delay);
+            time += rand.nextInt(15);
+            for (String fired : advance(wheel, time)) {
+                Assert.assertTrue(fired + " fired early", due.remove(fired) <= time);
+            }
+        }
+        while (wheel.size() > 0) {
+            time = wheel.nextDeadline();
+            for (String fired : advance(wheel, time)) {
+                long deadline = due.remove(fired);
+                Assert.assertTrue(fired + " fired early", deadline <= time);
+                Assert.assertTrue(fired + " fired more than a tick late", time - deadline < 10);
+            }
+        }
+        Assert.assertTrue(due.isEmpty());
+    }
+
+    @Test
+    public void deadlinesPastOneTurnWaitForTheirTurn() {
+        TimerWheel<String> wheel = new TimerWheel<String>(4, 10);
+        //same bucket, one and three turns away
+        wheel.schedule(0, 40, "near");
+        wheel.schedule(0, 120, "far");
+        Assert.assertEquals(40, wheel.nextDeadline());
+        Assert.assertEquals(Arrays.asList("near"), advance(wheel, 40));
+        Assert.assertEquals(120, wheel.nextDeadline());
+        Assert.assertTrue(advance(wheel, 80).isEmpty());
+        Assert.assertEquals(Arrays.asList("far"), advance(wheel, 120));
+    }
+
+    @Test
+    public void jumpOverManyTurnsExpiresOnlyWhatIsDue() {
+        TimerWheel<String> wheel = new TimerWheel<String>(4, 10);
+        wheel.schedule(0, 15, "a");
+        wheel.schedule(0, 500, "b");
+        wheel.schedule(0, 1000, "c");
+        List<String> fired = advance(wheel, 600);
+        Assert.assertEquals(2, fired.size());
+        Assert.assertTrue(fired.containsAll(Arrays.asList("a", "b")));
+        Assert.assertEquals(1000, wheel.nextDeadline());
+        //the wheel is now at the new time, new deadlines start from it
+        int handle = wheel.schedule(600, 5, "d");
+        Assert.assertEquals(610, wheel.deadline(handle));
+    }
+
+    @Test
+    public void cancelledTimerDoesNotFire() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 10);
+        int a = wheel.schedule(0, 30, "a");
+        wheel.schedule(0, 30, "b");
+        Assert.assertTrue(wheel.cancel(a));
+        Assert.assertFalse(wheel.cancel(a));
+        Assert.assertEquals(-1, wheel.deadline(a));
+        Assert.assertEquals(Arrays.asList("b"), advance(wheel, 30));
+    }
+
+    @Test
+    public void staleHandleDoesNotCancelTheReusedSlot() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 10);
+        int a = wheel.schedule(0, 10, "a");
+        advance(wheel, 10);
+        Assert.assertFalse(wheel.cancel(a));
+        int b = wheel.schedule(10, 10, "b");
+        Assert.assertFalse(wheel.cancel(a));
+        Assert.assertEquals(20, wheel.deadline(b));
+        Assert.assertEquals(Arrays.asList("b"), advance(wheel, 20));
+    }
+
+    @Test
+    public void growsPastTheInitialCapacity() {
+        TimerWheel<String> wheel = new TimerWheel<String>(8, 10);
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule(0, 10 + i, "t" + i);
+        }
+        Assert.assertEquals(100, wheel.size());
+        Assert.assertEquals(100, advance(wheel, 200).size());
+        Assert.assertEquals(0, wheel.size());
+    }
+}